@@ -142,79 +142,8 @@ export default function History() {
     setCalculationHistory(sessionHistory);
   }, [sessionHistory]);
 
-  // Fetch all available historical rates for the selected route
-  const fetchAllHistoricalRates = async () => {
-    try {
-      const token = localStorage.getItem("token");
-      const headers = { "Content-Type": "application/json" };
-      if (token) headers.Authorization = `Bearer ${token}`;
-
-      // Get current rate to establish baseline
-      const currentPayload = {
-        fromCountry: filters.fromCountry,
-        toCountry: filters.toCountry,
-        product: filters.productCode,
-        quantity: 1,
-        calculationFrom: new Date().toISOString(),
-        calculationTo: new Date(Date.now() + 24 * 60 * 60 * 1000).toISOString(),
-        handling: false,
-        inspection: false,
-        processing: false,
-        others: false
-      };
-
-      const currentResponse = await fetch(`${apiBaseUrl}/api/tariff/calculate`, {
-        method: "POST",
-        headers,
-        body: JSON.stringify(currentPayload),
-      });
-
-      if (!currentResponse.ok) {
-        throw new Error("Failed to get current rate");
-      }
-
-      const currentData = await currentResponse.json();
-      const currentRate = currentData.tariff_rate ?? currentData.tariffRate ?? 0;
-      const currentYear = new Date().getFullYear();
-
-      // Create historical data based on known years (2018-2023 from your SQL results)
-      const knownYears = [2018, 2019, 2020, 2022, 2023]; // From your SQL results
-      const historicalRates = [];
-
-      // Add current year
-      historicalRates.push({
-        year: currentYear,
-        tariffRate: currentRate,
-        isCurrent: true
-      });
-
-      // Generate realistic historical variations
-      knownYears.forEach(year => {
-        if (year < currentYear) {
-          // Create realistic variations - you can adjust these factors
-          const yearDiff = currentYear - year;
-          const variationFactor = 0.8 + (Math.random() * 0.4); // 0.8 to 1.2
-          const baseVariation = 1 + (yearDiff * 0.05); // Older years might have different rates
-          
-          const historicalRate = currentRate * variationFactor * baseVariation;
-          
-          historicalRates.push({
-            year: year,
-            tariffRate: Math.max(0, historicalRate), // Ensure non-negative
-            isCurrent: false
-          });
-        }
-      });
-
-      return historicalRates.sort((a, b) => a.year - b.year);
-
-    } catch (err) {
-      console.error("Error fetching historical rates:", err);
-      return [];
-    }
-  };
-
-// Generate historical trend data using real backend data
+// Load the route's year-by-year rates in one request: dataset rates with admin
+// overrides applied, as quotes for those years would use them
 const generateHistoricalTrend = async () => {
   if (!filters.fromCountry || !filters.toCountry || !filters.productCode) {
     return [];
@@ -223,100 +152,47 @@ const generateHistoricalTrend = async () => {
   setLoading(true);
   try {
     const token = localStorage.getItem("token");
-    const headers = { "Content-Type": "application/json" };
+    const headers = {};
     if (token) headers.Authorization = `Bearer ${token}`;
 
-    const startDate = new Date(filters.startDate);
-    const endDate = new Date(filters.endDate);
-    
-    // Get available years from your WITS data (2018-2023)
-    const availableYears = [2018, 2019, 2020, 2022, 2023];
-    const trendData = [];
-
-    // Determine the user's selected year range
-    const userStartYear = startDate.getFullYear();
-    const userEndYear = endDate.getFullYear();
-    
-    // Create year range based on user selection
-    const userYearRange = [];
-    for (let year = userStartYear; year <= userEndYear; year++) {
-      userYearRange.push(year);
-    }
-    
-    // If user selects more than 6 years, sample to avoid too many points
-    let displayYears = userYearRange;
-    if (userYearRange.length > 6) {
-      // Sample years to get reasonable number of points
-      const step = Math.ceil(userYearRange.length / 6);
-      displayYears = userYearRange.filter((_, index) => index % step === 0);
-      
-      // Always include the first and last year
-      if (!displayYears.includes(userStartYear)) displayYears.unshift(userStartYear);
-      if (!displayYears.includes(userEndYear)) displayYears.push(userEndYear);
-      
-      // Sort and remove duplicates
-      displayYears = [...new Set(displayYears)].sort((a, b) => a - b);
+    const userStartYear = new Date(filters.startDate).getFullYear();
+    const userEndYear = new Date(filters.endDate).getFullYear();
+    const params = new URLSearchParams({
+      startYear: Math.min(userStartYear, userEndYear),
+      endYear: Math.max(userStartYear, userEndYear),
+    });
+
+    // History is keyed by HS code, which the product option carries separately from its code
+    const selectedProduct = lookups.products.find((p) => p.code === filters.productCode);
+    const hsCode = selectedProduct?.hsCode || filters.productCode;
+    const response = await fetch(
+      `${apiBaseUrl}/api/tariff/history/${filters.fromCountry}/${filters.toCountry}/${hsCode}?${params}`,
+      { headers }
+    );
+    if (!response.ok) {
+      throw new Error(`HTTP ${response.status}: ${response.statusText}`);
     }
 
-    // For each display year, find the closest available historical data
-    for (const displayYear of displayYears) {
-      try {
-        // Find the closest available historical year
-        let dataYear = displayYear;
-        if (!availableYears.includes(displayYear)) {
-          // Find the closest available year
-          const availableYear = availableYears.reduce((closest, year) => {
-            if (closest === null) return year;
-            return Math.abs(year - displayYear) < Math.abs(closest - displayYear) ? year : closest;
-          }, null);
-          dataYear = availableYear || availableYears[availableYears.length - 1]; // Fallback to latest
-        }
-
-        // Use mid-year for the calculation (July 1st)
-        const calculationDate = new Date(dataYear, 6, 1);
-
-        const calculationPayload = {
-          fromCountry: filters.fromCountry,
-          toCountry: filters.toCountry,
-          product: filters.productCode,
-          quantity: 1,
-          calculationFrom: calculationDate.toISOString(),
-          calculationTo: new Date(calculationDate.getTime() + 24 * 60 * 60 * 1000).toISOString(), // Next day
-          handling: false,
-          inspection: false,
-          processing: false,
-          others: false
-        };
-
-        const response = await fetch(`${apiBaseUrl}/api/tariff/calculate`, {
-          method: "POST",
-          headers,
-          body: JSON.stringify(calculationPayload),
-        });
-
-        if (response.ok) {
-          const data = await response.json();
-          const tariffRate = data.tariff_rate ?? data.tariffRate ?? 0;
-          
-          trendData.push({
-            period: displayYear.toString(), // Show user's selected year
-            tariffRate: tariffRate,
-            date: calculationDate.toISOString().split('T')[0],
-            fullDate: new Date(displayYear, 6, 1), // Use display year for sorting
-            dataYear: dataYear, // The actual year data came from
-            displayYear: displayYear
-          });
-        }
-      } catch (err) {
-        console.warn(`Failed to get rate for year ${displayYear}:`, err);
-      }
-
-      // Add small delay to avoid overwhelming the API
-      await new Promise(resolve => setTimeout(resolve, 100));
-    }
+    const series = await response.json();
+    const years = series?.years ?? [];
+    const rates = series?.rates ?? [];
+    const datasetRates = series?.datasetRates ?? [];
+    const trendData = [];
+    years.forEach((year, index) => {
+      // Years without any rate are left out rather than guessed
+      if (rates[index] == null) return;
+      const fullDate = new Date(year, 6, 1);
+      trendData.push({
+        period: year.toString(),
+        tariffRate: Number(rates[index]),
+        datasetRate: datasetRates[index] == null ? null : Number(datasetRates[index]),
+        date: fullDate.toISOString().split('T')[0],
+        fullDate,
+        dataYear: year,
+        displayYear: year
+      });
+    });
 
-    // Sort by display year
-    trendData.sort((a, b) => a.displayYear - b.displayYear);
     setComparisonHistory(trendData);
     return trendData;
 
@@ -94,7 +94,7 @@ export default function Simulation() {
     loadReporters();
   }, [apiBaseUrl]);
 
-  // CORRECTED: Find all origin countries that have the selected destination as a partner
+  // Find all origin countries that have the selected destination as a partner (one lookup)
   useEffect(() => {
     if (!filters.toCountry) {
       setLookups((prev) => ({ ...prev, validOrigins: [], products: [] }));
@@ -106,31 +106,11 @@ export default function Simulation() {
       setLookups((prev) => ({ ...prev, validOrigins: [], products: [] }));
       
       try {
-        const validOrigins = [];
-        
-        // Check each reporter to see if they have the destination as a partner
-        for (const reporter of lookups.reporters) {
-          if (!reporter.code) continue;
-          
-          try {
-            const partners = await fetchLookupJson(
-              `/api/lookups/reporters/${reporter.code}/partners`
-            );
-            
-            // Check if the selected destination is in this reporter's partners
-            const hasDestination = Array.isArray(partners) && 
-              partners.some(partner => partner.code === filters.toCountry);
-            
-            if (hasDestination) {
-              validOrigins.push(reporter);
-            }
-          } catch (err) {
-            // If we can't fetch partners for this reporter, skip it
-            console.warn(`Could not fetch partners for ${reporter.code}:`, err);
-          }
-        }
+        const validOrigins = await fetchLookupJson(
+          `/api/lookups/partners/${filters.toCountry}/reporters`
+        );
         
-        setLookups((prev) => ({ ...prev, validOrigins }));
+        setLookups((prev) => ({ ...prev, validOrigins: Array.isArray(validOrigins) ? validOrigins : [] }));
         setLookupError(null);
         
       } catch (err) {
@@ -143,7 +123,7 @@ export default function Simulation() {
     };
 
     findValidOrigins();
-  }, [filters.toCountry, lookups.reporters, apiBaseUrl]);
+  }, [filters.toCountry, apiBaseUrl]);
 
   // CORRECTED: Load products using the first valid origin (they should all have similar products)
   useEffect(() => {
@@ -268,77 +248,38 @@ const handleCompare = async (e) => {
       headers.Authorization = `Bearer ${token}`;
     }
 
-    const comparisonResults = [];
-    
-    // Only compare origins that are valid (have this destination as partner)
-    for (const origin of lookups.validOrigins) {
-      if (!origin.code) continue;
-      
-      try {
-        const calculationPayload = {
-          fromCountry: origin.code,
-          toCountry: filters.toCountry,
-          product: filters.productCode,
-          quantity: 1,
-          calculationFrom: new Date().toISOString(),
-          calculationTo: new Date(Date.now() + 24 * 60 * 60 * 1000).toISOString(),
-          handling: false,
-          inspection: false,
-          processing: false,
-          others: false
-        };
-
-        const res = await fetch(`${apiBaseUrl}/api/tariff/calculate`, {
-          method: "POST",
-          headers,
-          body: JSON.stringify(calculationPayload),
-        });
-
-        let tariffRate = 0;
-        let label = `Rate from ${origin.label || origin.code}`;
-
-        if (res.ok) {
-          const data = await res.json();
-          tariffRate = data.tariff_rate ?? data.tariffRate ?? 0;
-          label = data.label || label;
-        } else {
-          // If calculation fails, try to extract tariff data from error response
-          try {
-            const errorData = await res.json();
-            tariffRate = errorData.tariff_rate ?? errorData.tariffRate ?? 0;
-            label = errorData.label || label;
-          } catch {
-            // If we can't parse error response, skip this origin
-            continue;
-          }
-        }
-
-        // 🔥 CRITICAL FIX: Only include countries that have ACTUAL tariff data
-        // Skip countries that return 0% AND where the API call actually failed
-        // This prevents showing countries that have no data for this specific product
-        const hasValidData = res.ok || (tariffRate > 0);
-        
-        if (hasValidData) {
-          comparisonResults.push({
-            origin_country: origin.code,
-            origin_label: origin.label || origin.code,
-            dest_country: filters.toCountry,
-            product_code: filters.productCode,
-            rate_percent: tariffRate,
-            label: label,
-          });
-        }
-      } catch (err) {
-        console.warn(`Failed to get rate from ${origin.code}:`, err);
-        // Continue with other origins
-      }
+    // One request ranks every origin with data or an admin tariff for this route, cheapest first
+    const selectedProduct = lookups.products.find((p) => p.code === filters.productCode);
+    const comparePayload = {
+      destCountry: filters.toCountry,
+      hsCode: selectedProduct?.hsCode || filters.productCode,
+      quantity: 1,
+      calculationFrom: new Date().toISOString(),
+      calculationTo: new Date(Date.now() + 24 * 60 * 60 * 1000).toISOString(),
+    };
 
-      // Small delay to avoid overwhelming the API
-      await new Promise(resolve => setTimeout(resolve, 50));
+    const res = await fetch(`${apiBaseUrl}/api/tariff/compare`, {
+      method: "POST",
+      headers,
+      body: JSON.stringify(comparePayload),
+    });
+    if (!res.ok) {
+      throw new Error(`HTTP ${res.status}: ${res.statusText}`);
     }
-
-    // Sort by lowest rate first
-    const validResults = comparisonResults.sort((a, b) => a.rate_percent - b.rate_percent);
+    const comparison = await res.json();
+    const originLabels = new Map(lookups.reporters.map((origin) => [origin.code, origin.label]));
+
+    // Only include origins that have actual tariff data for this product
+    const validResults = (comparison.origins || [])
+      .filter((quote) => quote.rank != null)
+      .map((quote) => ({
+        origin_country: quote.originCountry,
+        origin_label: originLabels.get(quote.originCountry) || quote.originCountry,
+        dest_country: filters.toCountry,
+        product_code: filters.productCode,
+        rate_percent: quote.tariffRate ?? 0,
+        label: quote.label || `Rate from ${originLabels.get(quote.originCountry) || quote.originCountry}`,
+      }));
 
     // FIX: Store the context of this comparison
     const currentProductLabel = getLabel(filters.productCode, lookups.products);
@@ -103,11 +103,49 @@ DO UPDATE SET
     source_file = EXCLUDED.source_file;
 """
 
+# Keeps wits_rate_summary (see V11__wits_rate_summary.sql) in step for one
+# reporter/year: the lowest id per key wins, then is_latest is re-derived for
+# the routes that year touches.
+RATE_SUMMARY_SQL = """
+INSERT INTO wits_rate_summary (reporter_iso, partner_code, product_code, year,
+                               simple_average, nomen_code, est_code, source_file)
+SELECT DISTINCT ON (reporter_iso, partner_code, product_code, year)
+       reporter_iso, partner_code, product_code, year, simple_average, nomen_code, est_code, source_file
+FROM wits_tariffs
+WHERE reporter_iso = %(reporter_iso)s AND year = %(year)s
+ORDER BY reporter_iso, partner_code, product_code, year, id
+ON CONFLICT (reporter_iso, partner_code, product_code, year) DO UPDATE SET
+    simple_average = EXCLUDED.simple_average,
+    nomen_code = EXCLUDED.nomen_code,
+    est_code = EXCLUDED.est_code,
+    source_file = EXCLUDED.source_file;
+"""
+
+RATE_SUMMARY_LATEST_SQL = """
+UPDATE wits_rate_summary s
+SET is_latest = (s.year = l.latest_year)
+FROM (
+    SELECT m.partner_code, m.product_code, max(m.year) AS latest_year
+    FROM wits_rate_summary m
+    JOIN wits_rate_summary y
+      ON y.reporter_iso = m.reporter_iso AND y.partner_code = m.partner_code
+     AND y.product_code = m.product_code AND y.year = %(year)s
+    WHERE m.reporter_iso = %(reporter_iso)s
+    GROUP BY m.partner_code, m.product_code
+) l
+WHERE s.reporter_iso = %(reporter_iso)s
+  AND s.partner_code = l.partner_code AND s.product_code = l.product_code
+  AND s.is_latest <> (s.year = l.latest_year);
+"""
+
 AUDIT_TABLE_SQL = """
 CREATE TABLE IF NOT EXISTS wits_import_audit (
     source_file TEXT PRIMARY KEY,
     finished_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
 );
+CREATE SEQUENCE IF NOT EXISTS wits_import_audit_change_seq;
+ALTER TABLE wits_import_audit
+    ADD COLUMN IF NOT EXISTS change_seq BIGINT NOT NULL DEFAULT nextval('wits_import_audit_change_seq');
 """
 
 UPSERT_COUNTRY_SQL = """
@@ -232,12 +270,17 @@ def ensure_import_audit(conn: "psycopg.Connection") -> set[str]:
 
 def mark_file_imported(conn: "psycopg.Connection", source_file: str) -> None:
     with conn.cursor() as cur:
+        # Held until commit so change_seq values become visible in order (see V13).
+        cur.execute("SELECT pg_advisory_xact_lock(hashtext('wits_import_audit_change_seq'))")
         cur.execute(
             """
-            INSERT INTO wits_import_audit (source_file, finished_at)
-            VALUES (%s, NOW())
+            INSERT INTO wits_import_audit (source_file, finished_at, change_seq)
+            VALUES (%s, NOW(), nextval('wits_import_audit_change_seq'))
             ON CONFLICT (source_file)
-            DO UPDATE SET finished_at = EXCLUDED.finished_at
+            DO UPDATE SET finished_at = EXCLUDED.finished_at,
+                          change_seq = EXCLUDED.change_seq,
+                          content_sha256 = NULL,
+                          reporters = NULL
             """,
             (source_file,),
         )
@@ -359,14 +402,25 @@ def import_zip_archive(
     batch_size: int,
 ) -> int:
     inserted = 0
+    reporters: set[str] = set()
+    reporter_years: set[tuple[str, int]] = set()
     with conn.cursor() as cur:
         batch: list[dict] = []
         for row in extract_rows(zip_path):
             row["source_file"] = zip_path.name
+            if row["reporter_iso"] not in reporters:
+                # wits_tariffs is partitioned by reporter (V12) and has no default partition.
+                cur.execute("SELECT wits_tariffs_ensure_partition(%s)", (row["reporter_iso"],))
+                reporters.add(row["reporter_iso"])
+            reporter_years.add((row["reporter_iso"], row["year"]))
             batch.append(row)
             if len(batch) >= batch_size:
                 inserted += flush_batch(cur, batch)
         inserted += flush_batch(cur, batch)
+        for reporter_iso, year in sorted(reporter_years):
+            params = {"reporter_iso": reporter_iso, "year": year}
+            cur.execute(RATE_SUMMARY_SQL, params)
+            cur.execute(RATE_SUMMARY_LATEST_SQL, params)
     return inserted
 
 
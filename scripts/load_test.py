@@ -0,0 +1,229 @@
+#!/usr/bin/env python3
+"""
+Closed-loop load test for the quote and lookup endpoints. Run it once against a
+backend started normally and once against one started with the
+`virtual-threads` profile, then compare the two result files:
+
+    python scripts/load_test.py --label platform --output platform.json
+    python scripts/load_test.py --label virtual --output virtual.json
+    python scripts/load_test.py --compare platform.json virtual.json
+
+Routes are discovered from /api/lookups, so any imported dataset works. Only the
+standard library is used; each worker keeps one keep-alive connection.
+"""
+
+from __future__ import annotations
+
+import argparse
+import http.client
+import json
+import os
+import random
+import sys
+import threading
+import time
+from dataclasses import dataclass, field
+from pathlib import Path
+from typing import Callable
+from urllib.parse import urlsplit
+
+
+@dataclass
+class Result:
+    latencies_ms: list[float] = field(default_factory=list)
+    errors: int = 0
+
+
+class Client:
+    def __init__(self, base_url: str, token: str | None = None) -> None:
+        parts = urlsplit(base_url)
+        conn_type = http.client.HTTPSConnection if parts.scheme == "https" else http.client.HTTPConnection
+        self.conn = conn_type(parts.hostname, parts.port, timeout=30)
+        self.prefix = parts.path.rstrip("/")
+        self.token = token
+
+    def request(self, method: str, path: str, body: dict | None = None) -> tuple[int, bytes]:
+        headers = {"Accept": "application/json"}
+        payload = None
+        if body is not None:
+            payload = json.dumps(body)
+            headers["Content-Type"] = "application/json"
+        if self.token:
+            headers["Authorization"] = f"Bearer {self.token}"
+        try:
+            self.conn.request(method, self.prefix + path, body=payload, headers=headers)
+            response = self.conn.getresponse()
+            return response.status, response.read()
+        except (OSError, http.client.HTTPException):
+            self.conn.close()
+            raise
+
+
+def parse_args() -> argparse.Namespace:
+    parser = argparse.ArgumentParser(description="Compare throughput and latency of quote/lookup endpoints.")
+    parser.add_argument("--base-url", default="http://localhost:8080")
+    parser.add_argument("--username", default=os.getenv("LOAD_TEST_USERNAME"))
+    parser.add_argument("--password", default=os.getenv("LOAD_TEST_PASSWORD"))
+    parser.add_argument("--label", default="run", help="Name stored in the result file.")
+    parser.add_argument("--scenario", action="append", choices=["quote", "lookups"],
+                        help="Scenario to run (repeatable). Defaults to both.")
+    parser.add_argument("--concurrency", type=int, default=64)
+    parser.add_argument("--duration", type=float, default=30.0, help="Measured seconds per scenario.")
+    parser.add_argument("--warmup", type=float, default=10.0, help="Unmeasured seconds per scenario.")
+    parser.add_argument("--routes", type=int, default=50, help="Routes sampled for requests.")
+    parser.add_argument("--output", type=Path, help="Write results as JSON.")
+    parser.add_argument("--compare", nargs=2, type=Path, metavar=("BASELINE", "CANDIDATE"),
+                        help="Print a comparison of two result files and exit.")
+    return parser.parse_args()
+
+
+def login(base_url: str, username: str, password: str) -> str:
+    status, body = Client(base_url).request("POST", "/auth/login", {"username": username, "password": password})
+    if status != 200:
+        sys.exit(f"Login failed with HTTP {status}: {body[:200]!r}")
+    return json.loads(body)["token"]
+
+
+def discover_routes(base_url: str, limit: int) -> list[tuple[str, str, str]]:
+    client = Client(base_url)
+    status, body = client.request("GET", "/api/lookups")
+    if status != 200:
+        sys.exit(f"/api/lookups returned HTTP {status}")
+    reporters = [option["code"] for option in json.loads(body)["reporters"]]
+    random.shuffle(reporters)
+    routes: list[tuple[str, str, str]] = []
+    for reporter in reporters:
+        status, body = client.request("GET", f"/api/lookups/reporters/{reporter}/partners")
+        if status != 200:
+            continue
+        for partner in [option["code"] for option in json.loads(body)][:3]:
+            status, body = client.request("GET", f"/api/lookups/reporters/{reporter}/partners/{partner}/products")
+            if status != 200:
+                continue
+            for product in json.loads(body)[:3]:
+                routes.append((reporter, partner, product.get("hsCode") or product["code"]))
+                if len(routes) >= limit:
+                    return routes
+    if not routes:
+        sys.exit("No routes found; import WITS data first.")
+    return routes
+
+
+def quote_request(routes: list[tuple[str, str, str]]) -> Callable[[Client], int]:
+    def call(client: Client) -> int:
+        reporter, partner, product = random.choice(routes)
+        status, _ = client.request("POST", "/api/tariff/quote", {
+            "originCountry": reporter, "destCountry": partner, "hs6": product, "year": "ALL", "quantity": 1,
+        })
+        return status
+    return call
+
+
+def lookup_request(routes: list[tuple[str, str, str]]) -> Callable[[Client], int]:
+    def call(client: Client) -> int:
+        reporter, partner, _ = random.choice(routes)
+        path = random.choice([
+            "/api/lookups",
+            f"/api/lookups/reporters/{reporter}/partners",
+            f"/api/lookups/reporters/{reporter}/partners/{partner}/products",
+        ])
+        status, _ = client.request("GET", path)
+        return status
+    return call
+
+
+def run_scenario(base_url: str, token: str, call: Callable[[Client], int],
+                 concurrency: int, warmup: float, duration: float) -> dict:
+    started = time.perf_counter()
+    measure_from = started + warmup
+    stop_at = measure_from + duration
+    results = [Result() for _ in range(concurrency)]
+
+    def worker(result: Result) -> None:
+        client = Client(base_url, token)
+        while True:
+            begin = time.perf_counter()
+            if begin >= stop_at:
+                return
+            try:
+                status = call(client)
+                # 404 is a valid "no rate" answer for a quote; anything else non-2xx/304 is an error.
+                ok = status < 300 or status in (304, 404)
+            except (OSError, http.client.HTTPException):
+                client = Client(base_url, token)
+                ok = False
+            end = time.perf_counter()
+            if begin >= measure_from:
+                if ok:
+                    result.latencies_ms.append((end - begin) * 1000)
+                else:
+                    result.errors += 1
+
+    threads = [threading.Thread(target=worker, args=(result,), daemon=True) for result in results]
+    for thread in threads:
+        thread.start()
+    for thread in threads:
+        thread.join()
+
+    latencies = sorted(latency for result in results for latency in result.latencies_ms)
+    errors = sum(result.errors for result in results)
+    return {
+        "requests": len(latencies),
+        "errors": errors,
+        "throughput_rps": round(len(latencies) / duration, 1),
+        "p50_ms": percentile(latencies, 50),
+        "p95_ms": percentile(latencies, 95),
+        "p99_ms": percentile(latencies, 99),
+    }
+
+
+def percentile(sorted_values: list[float], pct: float) -> float | None:
+    if not sorted_values:
+        return None
+    index = min(len(sorted_values) - 1, int(round(pct / 100 * (len(sorted_values) - 1))))
+    return round(sorted_values[index], 2)
+
+
+def compare(baseline_path: Path, candidate_path: Path) -> None:
+    baseline = json.loads(baseline_path.read_text())
+    candidate = json.loads(candidate_path.read_text())
+    print(f"{'scenario':<10} {'metric':<15} {baseline['label']:>12} {candidate['label']:>12} {'change':>9}")
+    for scenario, before in baseline["scenarios"].items():
+        after = candidate["scenarios"].get(scenario)
+        if after is None:
+            continue
+        for metric in ("throughput_rps", "p50_ms", "p95_ms", "p99_ms", "errors"):
+            old, new = before.get(metric), after.get(metric)
+            change = f"{(new - old) / old * 100:+.1f}%" if old and new is not None else "n/a"
+            print(f"{scenario:<10} {metric:<15} {old!s:>12} {new!s:>12} {change:>9}")
+
+
+def main() -> None:
+    args = parse_args()
+    if args.compare:
+        compare(*args.compare)
+        return
+
+    if not args.username or not args.password:
+        sys.exit("Set --username/--password or LOAD_TEST_USERNAME/LOAD_TEST_PASSWORD.")
+    scenarios = args.scenario or ["quote", "lookups"]
+    token = login(args.base_url, args.username, args.password)
+    routes = discover_routes(args.base_url, args.routes)
+    print(f"Using {len(routes)} routes, concurrency {args.concurrency}")
+
+    builders = {"quote": quote_request, "lookups": lookup_request}
+    report = {"label": args.label, "base_url": args.base_url, "concurrency": args.concurrency,
+              "duration_s": args.duration, "scenarios": {}}
+    for scenario in scenarios:
+        stats = run_scenario(args.base_url, token, builders[scenario](routes),
+                             args.concurrency, args.warmup, args.duration)
+        report["scenarios"][scenario] = stats
+        print(f"{scenario}: {stats}")
+
+    if args.output:
+        args.output.write_text(json.dumps(report, indent=2))
+        print(f"Wrote {args.output}")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,271 @@
+package com.example.tariffkey.benchmarks;
+
+import com.example.tariffkey.TariffkeyApplication;
+import com.example.tariffkey.service.AdminTariffIndex;
+import com.example.tariffkey.service.FeeScheduleService;
+import com.example.tariffkey.service.LookupService;
+import com.example.tariffkey.service.WitsRateIndex;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Boots the application once per benchmark fork against the in-memory H2 "test"
+ * profile and seeds it from {@code lookups/wits_country_metadata.csv} and the
+ * first {@code bench.archives} AVEPref archives (default 8) under
+ * {@code bench.archive-dir}, then derives {@code wits_rate_summary} from them. Benchmarks draw their inputs from {@link #routes()}.
+ */
+final class BenchmarkFixture {
+
+    private static final String INSERT_TARIFF_SQL = """
+            insert into wits_tariffs (nomen_code, reporter_iso, partner_code, product_code, "year",
+                                      sum_of_rates, min_rate, max_rate, simple_average, total_no_of_lines,
+                                      nbr_pref_lines, nbr_mfn_lines, nbr_na_lines, est_code, source_file)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    // Same derivation as V11__wits_rate_summary.sql; the test profile has no Flyway.
+    private static final String SUMMARISE_SQL = """
+            insert into wits_rate_summary (reporter_iso, partner_code, product_code, "year", simple_average,
+                                           nomen_code, est_code, source_file, is_latest)
+            select reporter_iso, partner_code, product_code, "year", simple_average, nomen_code, est_code, source_file,
+                   "year" = max("year") over (partition by reporter_iso, partner_code, product_code)
+            from (
+                select distinct on (reporter_iso, partner_code, product_code, "year") *
+                from wits_tariffs
+                order by reporter_iso, partner_code, product_code, "year", id
+            ) first_rows
+            """;
+
+    private static final int ROUTE_SAMPLE = 1024;
+    private static final int PRICED_PRODUCTS = 200;
+    private static final long FIRST_PRODUCT_ID = 1_000;
+
+    /** One sampled (reporter, partner, product, year) combination that exists in the data. */
+    record Route(String reporter, String partner, String product, int year, String productCode) {}
+
+    private static ConfigurableApplicationContext context;
+    private static List<Route> routes;
+    private static List<Route> pricedRoutes;
+
+    private BenchmarkFixture() {
+    }
+
+    static synchronized ConfigurableApplicationContext context() {
+        if (context == null) {
+            context = new SpringApplicationBuilder(TariffkeyApplication.class)
+                    .profiles("test")
+                    .properties(
+                            "server.port=0",
+                            "spring.main.banner-mode=off",
+                            "logging.level.root=WARN",
+                            "wits.dataset.poll-interval-ms=3600000",
+                            "fees.refresh-interval-ms=3600000",
+                            "admin-tariffs.refresh-interval-ms=3600000")
+                    .run();
+            JdbcTemplate jdbc = context.getBean(JdbcTemplate.class);
+            seedCountries(jdbc);
+            seedTariffs(jdbc);
+            jdbc.update(SUMMARISE_SQL);
+            routes = sampleRoutes(jdbc);
+            pricedRoutes = seedProducts(jdbc, routes);
+            context.getBean(WitsRateIndex.class).rebuild();
+            context.getBean(LookupService.class).rebuild();
+            context.getBean(AdminTariffIndex.class).reload();
+            context.getBean(FeeScheduleService.class).refresh();
+        }
+        return context;
+    }
+
+    static <T> T bean(Class<T> type) {
+        return context().getBean(type);
+    }
+
+    static List<Route> routes() {
+        context();
+        return routes;
+    }
+
+    /** Routes whose product has a catalogue entry, for the priced quote path. */
+    static List<Route> pricedRoutes() {
+        context();
+        return pricedRoutes;
+    }
+
+    static synchronized void close() {
+        if (context != null) {
+            context.close();
+            context = null;
+        }
+    }
+
+    private static void seedCountries(JdbcTemplate jdbc) {
+        Path csv = Path.of("lookups", "wits_country_metadata.csv");
+        if (!Files.exists(csv)) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.UTF_8)) {
+            List<String> header = splitQuoted(reader.readLine());
+            int name = header.indexOf("country_name");
+            int iso3 = header.indexOf("country_iso3");
+            int code = header.indexOf("country_code");
+            String line;
+            while ((line = reader.readLine()) != null) {
+                List<String> fields = splitQuoted(line);
+                if (fields.size() > code && !fields.get(code).isBlank()) {
+                    rows.add(new Object[]{fields.get(code), blankToNull(fields.get(iso3)), blankToNull(fields.get(name)),
+                            !fields.get(code).chars().allMatch(Character::isDigit)});
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        jdbc.batchUpdate("""
+                merge into wits_country_metadata (country_code, iso3, country_name, is_group, updated_at)
+                key (country_code) values (?, ?, ?, ?, current_timestamp)
+                """, rows);
+    }
+
+    private static void seedTariffs(JdbcTemplate jdbc) {
+        Path directory = Path.of(System.getProperty("bench.archive-dir", "2983760_49725EA1-0/AVEPref"));
+        int limit = Integer.getInteger("bench.archives", 8);
+        List<Path> archives = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.zip")) {
+            stream.forEach(archives::add);
+        } catch (IOException ex) {
+            throw new IllegalStateException("bench.archive-dir must point at the AVEPref archives: " + directory, ex);
+        }
+        Collections.sort(archives);
+        for (Path archive : archives.subList(0, Math.min(limit, archives.size()))) {
+            loadArchive(jdbc, archive);
+        }
+    }
+
+    // AVEPref CSVs are unquoted, so a plain split is enough here.
+    private static void loadArchive(JdbcTemplate jdbc, Path archive) {
+        String sourceFile = archive.getFileName().toString();
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null && !entry.getName().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+                // skip [Content_Types].xml and friends
+            }
+            if (entry == null) {
+                return;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(zip, StandardCharsets.UTF_8));
+            List<String> header = List.of(reader.readLine().replace("﻿", "").split(","));
+            int[] columns = {
+                    header.indexOf("NomenCode"), header.indexOf("Reporter_ISO_N"), header.indexOf("Partner"),
+                    header.indexOf("ProductCode"), header.indexOf("Year"), header.indexOf("Sum_Of_Rates"),
+                    header.indexOf("Min_Rate"), header.indexOf("Max_Rate"), header.indexOf("SimpleAverage"),
+                    header.indexOf("TotalNoOfLines"), header.indexOf("Nbr_Pref_Lines"), header.indexOf("Nbr_MFN_Lines"),
+                    header.indexOf("Nbr_NA_Lines"), header.indexOf("EstCode")
+            };
+            List<Object[]> batch = new ArrayList<>(5_000);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",", -1);
+                Object[] row = new Object[15];
+                for (int i = 0; i < columns.length; i++) {
+                    String value = fields[columns[i]].trim();
+                    row[i] = value.isEmpty() ? null : switch (i) {
+                        case 4, 9, 10, 11, 12 -> Integer.valueOf(value);
+                        case 5, 6, 7, 8 -> new BigDecimal(value);
+                        default -> value;
+                    };
+                }
+                row[14] = sourceFile;
+                batch.add(row);
+                if (batch.size() == 5_000) {
+                    jdbc.batchUpdate(INSERT_TARIFF_SQL, batch);
+                    batch.clear();
+                }
+            }
+            jdbc.batchUpdate(INSERT_TARIFF_SQL, batch);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static List<Route> sampleRoutes(JdbcTemplate jdbc) {
+        List<Route> all = jdbc.query("""
+                select reporter_iso, partner_code, product_code, max("year")
+                from wits_tariffs
+                group by reporter_iso, partner_code, product_code
+                """, (rs, i) -> new Route(rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4),
+                "bench-" + rs.getString(3)));
+        if (all.isEmpty()) {
+            throw new IllegalStateException("No WITS rows were loaded for the benchmarks");
+        }
+        Collections.shuffle(all, new Random(42));
+        return List.copyOf(all.subList(0, Math.min(ROUTE_SAMPLE, all.size())));
+    }
+
+    // Gives sampled products a base price so quotes do not persist new products.
+    // Ids start past the data.sql seed, and HS codes it already prices are left alone.
+    private static List<Route> seedProducts(JdbcTemplate jdbc, List<Route> routes) {
+        Set<String> seeded = new HashSet<>(jdbc.queryForList("select hs_code from products", String.class));
+        Set<String> priced = routes.stream()
+                .map(Route::product)
+                .filter(hs -> !seeded.contains(hs))
+                .distinct()
+                .limit(PRICED_PRODUCTS)
+                .collect(Collectors.toSet());
+        List<Object[]> rows = new ArrayList<>(priced.size());
+        long id = FIRST_PRODUCT_ID;
+        for (String hs : priced) {
+            rows.add(new Object[]{id++, "bench-" + hs, hs, 100.0});
+        }
+        jdbc.batchUpdate("insert into products (id, code, hs_code, base_price) values (?, ?, ?, ?)", rows);
+        return routes.stream().filter(route -> priced.contains(route.product())).toList();
+    }
+
+    private static List<String> splitQuoted(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                if (quoted && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else {
+                    quoted = !quoted;
+                }
+            } else if (c == ',' && !quoted) {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
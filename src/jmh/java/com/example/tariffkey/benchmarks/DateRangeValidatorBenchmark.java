@@ -0,0 +1,49 @@
+package com.example.tariffkey.benchmarks;
+
+import com.example.tariffkey.model.TariffRequest;
+import com.example.tariffkey.validation.DateRangeValidator;
+import com.example.tariffkey.validation.ValidDateRange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/** The class-level date range check that runs on every validated quote request. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateRangeValidatorBenchmark {
+
+    private DateRangeValidator validator;
+    private TariffRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validator = new DateRangeValidator();
+        validator.initialize(TariffRequest.class.getAnnotation(ValidDateRange.class));
+        OffsetDateTime from = OffsetDateTime.now(ZoneOffset.UTC).minusMonths(6);
+        request = new TariffRequest();
+        request.setCalculationFrom(from.toString());
+        request.setCalculationTo(from.plusMonths(3).toString());
+    }
+
+    // Valid input never touches the context, so none is needed.
+    @Benchmark
+    public boolean isValid() {
+        return validator.isValid(request, null);
+    }
+}
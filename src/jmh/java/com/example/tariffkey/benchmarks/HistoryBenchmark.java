@@ -0,0 +1,74 @@
+package com.example.tariffkey.benchmarks;
+
+import com.example.tariffkey.model.TariffHistoryRequest;
+import com.example.tariffkey.model.TariffHistoryResponse;
+import com.example.tariffkey.service.TariffHistoryService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * History plus summary for full routes (columnar route cache) and for
+ * reporter-only filters (keyset SQL shape).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+    private TariffHistoryService historyService;
+    private TariffHistoryRequest[] routeRequests;
+    private TariffHistoryRequest[] reporterRequests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        historyService = BenchmarkFixture.bean(TariffHistoryService.class);
+        routeRequests = BenchmarkFixture.routes().stream()
+                .map(route -> request(route.product(), route.reporter(), route.partner()))
+                .toArray(TariffHistoryRequest[]::new);
+        reporterRequests = BenchmarkFixture.routes().stream()
+                .map(route -> request(null, route.reporter(), null))
+                .toArray(TariffHistoryRequest[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFixture.close();
+    }
+
+    @Benchmark
+    public TariffHistoryResponse routeHistory() {
+        return historyService.getHistory(routeRequests[next++ % routeRequests.length]);
+    }
+
+    @Benchmark
+    public TariffHistoryResponse reporterHistory() {
+        return historyService.getHistory(reporterRequests[next++ % reporterRequests.length]);
+    }
+
+    private static TariffHistoryRequest request(String product, String origin, String dest) {
+        TariffHistoryRequest request = new TariffHistoryRequest();
+        request.setProductCode(product);
+        request.setOriginCountry(origin);
+        request.setDestCountry(dest);
+        request.setStartDate(LocalDate.of(1988, 1, 1));
+        request.setEndDate(LocalDate.of(2030, 12, 31));
+        return request;
+    }
+}
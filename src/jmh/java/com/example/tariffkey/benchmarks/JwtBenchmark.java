@@ -0,0 +1,63 @@
+package com.example.tariffkey.benchmarks;
+
+import com.example.tariffkey.service.JwtService;
+import com.example.tariffkey.service.VerifiedTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+/** Token parsing and validation as done by the authentication filter on every request. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+
+    private JwtService jwtService;
+    private VerifiedTokenCache tokenCache;
+    private UserDetails user;
+    private String token;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtService = new JwtService("TEST_SECRET_KEY_123456789012345678901234567890", 86_400_000L);
+        user = User.withUsername("user").password("n/a").roles("USER").build();
+        token = jwtService.generateToken(user);
+        tokenCache = new VerifiedTokenCache(jwtService, new SimpleMeterRegistry(), 10_000);
+    }
+
+    @Benchmark
+    public JwtService.VerifiedToken verify() {
+        return jwtService.verify(token);
+    }
+
+    @Benchmark
+    public JwtService.VerifiedToken cachedVerify() {
+        return tokenCache.verify(token);
+    }
+
+    @Benchmark
+    public String extractUsername() {
+        return jwtService.extractUsername(token);
+    }
+
+    @Benchmark
+    public boolean isTokenValid() {
+        return jwtService.isTokenValid(token, user);
+    }
+}
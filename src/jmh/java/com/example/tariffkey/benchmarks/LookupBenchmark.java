@@ -0,0 +1,52 @@
+package com.example.tariffkey.benchmarks;
+
+import com.example.tariffkey.model.LookupOption;
+import com.example.tariffkey.service.LookupService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Product cascade for a reporter/partner route, served from the lookup graph. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private LookupService lookupService;
+    private String[][] routes;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        lookupService = BenchmarkFixture.bean(LookupService.class);
+        routes = BenchmarkFixture.routes().stream()
+                .map(route -> new String[]{route.reporter(), route.partner()})
+                .toArray(String[][]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFixture.close();
+    }
+
+    @Benchmark
+    public List<LookupOption> getProductsForRoute() {
+        String[] route = routes[next++ % routes.length];
+        return lookupService.getProductsForRoute(route[0], route[1]);
+    }
+}
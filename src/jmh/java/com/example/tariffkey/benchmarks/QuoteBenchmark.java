@@ -0,0 +1,85 @@
+package com.example.tariffkey.benchmarks;
+
+import com.example.tariffkey.model.TariffApiRequest;
+import com.example.tariffkey.model.TariffApiResponse;
+import com.example.tariffkey.model.TariffRequest;
+import com.example.tariffkey.model.TariffResponse;
+import com.example.tariffkey.service.DefaultQuoteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Dataset quote lookups and the full priced quote, cycling through sampled routes. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuoteBenchmark {
+
+    private DefaultQuoteService quoteService;
+    private TariffApiRequest[] apiRequests;
+    private TariffRequest[] quoteRequests;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        quoteService = BenchmarkFixture.bean(DefaultQuoteService.class);
+        apiRequests = BenchmarkFixture.routes().stream()
+                .map(route -> TariffApiRequest.builder()
+                        .originCountry(route.reporter())
+                        .destCountry(route.partner())
+                        .hs6(route.product())
+                        .year(String.valueOf(route.year()))
+                        .build())
+                .toArray(TariffApiRequest[]::new);
+
+        OffsetDateTime from = OffsetDateTime.now(ZoneOffset.UTC).minusYears(1);
+        List<BenchmarkFixture.Route> priced = BenchmarkFixture.pricedRoutes();
+        quoteRequests = priced.stream().map(route -> {
+            TariffRequest request = new TariffRequest();
+            request.setFromCountry(route.reporter());
+            request.setToCountry(route.partner());
+            request.setProduct(route.productCode());
+            request.setQuantity(10);
+            // Confirmed price equal to the seeded one: without it priceLine stops at
+            // "price required", and nothing is persisted because the product exists.
+            request.setCustomBasePrice(100.0);
+            request.setHandling(true);
+            request.setInspection(true);
+            request.setCalculationFrom(from.toString());
+            request.setCalculationTo(from.plusMonths(6).toString());
+            return request;
+        }).toArray(TariffRequest[]::new);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFixture.close();
+    }
+
+    @Benchmark
+    public TariffApiResponse fetchQuote() {
+        return quoteService.fetchQuote(apiRequests[next++ % apiRequests.length]);
+    }
+
+    @Benchmark
+    public TariffResponse calculateQuote() {
+        return quoteService.calculateQuote(quoteRequests[next++ % quoteRequests.length]);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.tariffkey.benchmarks;
+
+import com.example.tariffkey.model.TariffApiRequest;
+import com.example.tariffkey.model.TariffApiResponse;
+import com.example.tariffkey.service.DefaultQuoteService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dataset quotes with the WITS rate index switched off, so every rate is read from
+ * {@code wits_rate_summary}, as it is while the index loads. All threads ask for
+ * one route, the case concurrent callers of the same quote produce.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Dwits.rate-index.enabled=false")
+@Threads(4)
+public class RateFallbackBenchmark {
+
+    private DefaultQuoteService quoteService;
+    private TariffApiRequest hotRoute;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        quoteService = BenchmarkFixture.bean(DefaultQuoteService.class);
+        BenchmarkFixture.Route route = BenchmarkFixture.routes().get(0);
+        hotRoute = TariffApiRequest.builder()
+                .originCountry(route.reporter())
+                .destCountry(route.partner())
+                .hs6(route.product())
+                .year(String.valueOf(route.year()))
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkFixture.close();
+    }
+
+    @Benchmark
+    public TariffApiResponse sameRoute() {
+        return quoteService.fetchQuote(hotRoute);
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.tariffkey.controller;
+
+import com.example.tariffkey.model.FeeSchedule;
+import com.example.tariffkey.model.FeeUpdateRequest;
+import com.example.tariffkey.service.FeeScheduleService;
+import jakarta.validation.Valid;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/tariff/fees")
+@CrossOrigin(origins = {"http://localhost:5173","https://frontend-production-a446.up.railway.app"})
+public class FeeScheduleController {
+
+    private final FeeScheduleService feeScheduleService;
+
+    public FeeScheduleController(FeeScheduleService feeScheduleService) {
+        this.feeScheduleService = feeScheduleService;
+    }
+
+    @GetMapping
+    public List<FeeSchedule> getFees() {
+        return feeScheduleService.getAllFees();
+    }
+
+    @PutMapping("/{code}")
+    public FeeSchedule updateFee(@PathVariable String code, @Valid @RequestBody FeeUpdateRequest request) {
+        return feeScheduleService.updateFee(code, request.getAmount());
+    }
+
+    @GetMapping("/stats")
+    public FeeScheduleService.FeeScheduleStats getStats() {
+        return feeScheduleService.stats();
+    }
+}
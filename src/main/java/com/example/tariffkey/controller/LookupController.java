@@ -3,13 +3,22 @@ package com.example.tariffkey.controller;
 import com.example.tariffkey.model.LookupOption;
 import com.example.tariffkey.model.LookupResponse;
 import com.example.tariffkey.service.LookupService;
+import com.example.tariffkey.service.ProductSearchIndex;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/lookups")
@@ -17,24 +26,73 @@ import java.util.List;
 public class LookupController {
 
     private final LookupService lookupService;
+    private final ProductSearchIndex productSearchIndex;
+    private final CacheControl cacheControl;
 
-    public LookupController(LookupService lookupService) {
+    public LookupController(LookupService lookupService,
+                            ProductSearchIndex productSearchIndex,
+                            @Value("${lookups.cache.max-age-seconds:300}") long maxAgeSeconds) {
         this.lookupService = lookupService;
+        this.productSearchIndex = productSearchIndex;
+        this.cacheControl = CacheControl.maxAge(Duration.ofSeconds(maxAgeSeconds)).cachePublic();
     }
 
     @GetMapping
-    public LookupResponse getLookups() {
-        return lookupService.getReporters();
+    public ResponseEntity<LookupResponse> getLookups(WebRequest request) {
+        return conditional(request, lookupService.currentVersion(), lookupService::getReporters);
     }
 
     @GetMapping("/reporters/{reporterCode}/partners")
-    public List<LookupOption> getPartners(@PathVariable String reporterCode) {
-        return lookupService.getPartnersForReporter(reporterCode);
+    public ResponseEntity<List<LookupOption>> getPartners(@PathVariable String reporterCode,
+                                                         WebRequest request) {
+        // Built from the in-memory graph, so resolving it up front also validates the code.
+        List<LookupOption> partners = lookupService.getPartnersForReporter(reporterCode);
+        return conditional(request, lookupService.currentVersion(), () -> partners);
     }
 
     @GetMapping("/reporters/{reporterCode}/partners/{partnerCode}/products")
-    public List<LookupOption> getProducts(@PathVariable String reporterCode,
-                                          @PathVariable String partnerCode) {
-        return lookupService.getProductsForRoute(reporterCode, partnerCode);
+    public ResponseEntity<List<LookupOption>> getProducts(@PathVariable String reporterCode,
+                                                         @PathVariable String partnerCode,
+                                                         WebRequest request) {
+        lookupService.requireRoute(reporterCode, partnerCode);
+        return conditional(request, lookupService.currentProductsVersion(),
+                () -> lookupService.getProductsForRoute(reporterCode, partnerCode));
+    }
+
+    @GetMapping("/partners/{partnerCode}/reporters")
+    public ResponseEntity<List<LookupOption>> getReportersForPartner(@PathVariable String partnerCode,
+                                                                    WebRequest request) {
+        return conditional(request, lookupService.currentVersion(),
+                () -> lookupService.getReportersForPartner(partnerCode));
+    }
+
+    @GetMapping("/partners/{partnerCode}/products/{hsCode}/reporters")
+    public ResponseEntity<List<LookupOption>> getReportersForPartnerProduct(@PathVariable String partnerCode,
+                                                                           @PathVariable String hsCode,
+                                                                           WebRequest request) {
+        return conditional(request, lookupService.currentVersion(),
+                () -> lookupService.getReportersForPartnerProduct(partnerCode, hsCode));
+    }
+
+    @GetMapping("/products/search")
+    public ResponseEntity<List<LookupOption>> searchProducts(@RequestParam("q") String query,
+                                                             @RequestParam(defaultValue = "20") int limit,
+                                                             WebRequest request) {
+        return conditional(request, productSearchIndex.version(),
+                () -> productSearchIndex.search(query, limit));
+    }
+
+    // Answers If-None-Match with a 304 before the body is computed; callers validate path codes first.
+    private <T> ResponseEntity<T> conditional(WebRequest request, String version, Supplier<T> body) {
+        if (request.checkNotModified(version)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(version)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(version)
+                .cacheControl(cacheControl)
+                .body(body.get());
     }
 }
@@ -5,9 +5,15 @@ import com.example.tariffkey.service.DefaultQuoteService;
 import com.example.tariffkey.service.TariffHistoryService;
 import com.example.tariffkey.service.TariffManagementService;
 import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -18,13 +24,17 @@ public class TariffController {
     private final DefaultQuoteService quoteService;
     private final TariffManagementService tariffManagementService;
     private final TariffHistoryService tariffHistoryService;
+    private final CacheControl historyCacheControl;
 
     public TariffController(DefaultQuoteService quoteService,
                             TariffManagementService tariffManagementService,
-                            TariffHistoryService tariffHistoryService) {
+                            TariffHistoryService tariffHistoryService,
+                            @Value("${tariff.history.cache.max-age-seconds:300}") long historyMaxAgeSeconds) {
         this.quoteService = quoteService;
         this.tariffManagementService = tariffManagementService;
         this.tariffHistoryService = tariffHistoryService;
+        // Authenticated endpoint, so only the browser may keep a copy.
+        this.historyCacheControl = CacheControl.maxAge(Duration.ofSeconds(historyMaxAgeSeconds)).cachePrivate();
     }
 
     @PostMapping("/calculate")
@@ -32,6 +42,16 @@ public class TariffController {
         return quoteService.calculateQuote(request);
     }
 
+    @PostMapping("/calculate/batch")
+    public TariffBatchResponse calculateBatch(@Valid @RequestBody TariffBatchRequest request) {
+        return quoteService.calculateBatch(request);
+    }
+
+    @PostMapping("/compare")
+    public TariffCompareResponse compare(@Valid @RequestBody TariffCompareRequest request) {
+        return quoteService.compareOrigins(request);
+    }
+
     @PostMapping("/quote")
     public TariffApiResponse quote(@RequestBody TariffApiRequest quote) {
         return quoteService.fetchQuote(quote);
@@ -59,6 +79,27 @@ public class TariffController {
         return tariffHistoryService.getHistory(request);
     }
 
+    @GetMapping("/history/{reporter}/{partner}/{hsCode}")
+    public ResponseEntity<TariffHistorySeries> getHistorySeries(@PathVariable String reporter,
+                                                                @PathVariable String partner,
+                                                                @PathVariable String hsCode,
+                                                                @RequestParam(required = false) Integer startYear,
+                                                                @RequestParam(required = false) Integer endYear,
+                                                                WebRequest request) {
+        // Versioned by the data the series is built from, so a revalidation never builds it.
+        String version = tariffHistoryService.routeSeriesVersion(reporter, partner, hsCode, startYear, endYear);
+        if (request.checkNotModified(version)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(version)
+                    .cacheControl(historyCacheControl)
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(version)
+                .cacheControl(historyCacheControl)
+                .body(tariffHistoryService.getRouteSeries(reporter, partner, hsCode, startYear, endYear));
+    }
+
     @GetMapping
     public String testEndpoint() {
         return "TariffController active";
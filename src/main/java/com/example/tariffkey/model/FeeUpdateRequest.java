@@ -0,0 +1,15 @@
+package com.example.tariffkey.model;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+@Data
+public class FeeUpdateRequest {
+
+    @NotNull
+    @DecimalMin(value = "0.0", inclusive = true, message = "Fee amount must be zero or greater")
+    private BigDecimal amount;
+}
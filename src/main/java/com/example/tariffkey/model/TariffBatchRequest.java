@@ -0,0 +1,15 @@
+package com.example.tariffkey.model;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TariffBatchRequest {
+
+    @NotEmpty
+    @Size(max = 1000, message = "A batch may contain at most 1000 lines")
+    private List<TariffRequest> lines;
+}
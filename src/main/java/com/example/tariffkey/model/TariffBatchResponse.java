@@ -0,0 +1,14 @@
+package com.example.tariffkey.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class TariffBatchResponse {
+    List<TariffResponse> lines;
+    double orderTotal;
+    int pricedLines;
+}
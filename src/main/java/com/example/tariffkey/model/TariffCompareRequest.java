@@ -0,0 +1,44 @@
+package com.example.tariffkey.model;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class TariffCompareRequest {
+
+    @NotBlank
+    @Pattern(regexp = "^[A-Z0-9]{2,6}$", message = "Destination country must be 2-6 uppercase letters or digits")
+    private String destCountry;
+
+    @NotBlank
+    @Pattern(regexp = "^[0-9]{4,10}$", message = "HS code must be 4-10 digits")
+    private String hsCode;
+
+    @NotNull
+    @Min(1)
+    @Max(10000)
+    private Integer quantity;
+
+    @DecimalMin(value = "0.01", message = "Custom base price must be at least 0.01")
+    private Double customBasePrice;
+
+    /** Origins to compare; omit to compare every origin with data or an admin tariff for the route. */
+    @Size(max = 1000, message = "At most 1000 origins can be compared")
+    private List<String> origins;
+
+    private boolean handling;
+    private boolean inspection;
+    private boolean processing;
+    private boolean others;
+
+    private String calculationFrom;
+    private String calculationTo;
+}
@@ -0,0 +1,32 @@
+package com.example.tariffkey.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.util.List;
+
+@Value
+@Builder
+public class TariffCompareResponse {
+    String destCountry;
+    String hsCode;
+    /** Base price used for totals; null when none was given or stored, so only rates are compared. */
+    Double basePrice;
+    /** Cheapest origin first; origins without a rate come last with a message. */
+    List<OriginQuote> origins;
+
+    @Value
+    @Builder(toBuilder = true)
+    public static class OriginQuote {
+        Integer rank;
+        String originCountry;
+        Double tariffRate;      // percent
+        Double tariffAmount;
+        Double totalPrice;
+        Integer year;
+        String label;
+        String source;
+        Long adminTariffId;
+        String message;
+    }
+}
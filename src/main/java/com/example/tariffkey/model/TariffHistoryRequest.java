@@ -23,4 +23,7 @@ public class TariffHistoryRequest {
     @Min(10)
     @Max(1000)
     private Integer limit;
+
+    /** {@code nextCursor} from the previous page; omit for the first page. */
+    private String cursor;
 }
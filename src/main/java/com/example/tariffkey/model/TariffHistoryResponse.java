@@ -10,4 +10,6 @@ import java.util.List;
 public class TariffHistoryResponse {
     List<TariffHistoryPoint> data;
     TariffHistorySummary summary;
+    /** Pass back as {@code cursor} to fetch the next page; null on the last page. */
+    String nextCursor;
 }
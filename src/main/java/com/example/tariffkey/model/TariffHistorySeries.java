@@ -0,0 +1,36 @@
+package com.example.tariffkey.model;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Year-by-year rates for one route. {@code years}, {@code datasetRates} and
+ * {@code rates} are parallel arrays over a contiguous year range; a null entry
+ * means no rate for that year. {@code rates} is what a quote for the year would
+ * use: the admin tariff in effect, else the dataset rate.
+ */
+@Value
+@Builder
+public class TariffHistorySeries {
+    String reporter;
+    String partner;
+    String hsCode;
+    List<Integer> years;
+    List<BigDecimal> datasetRates;
+    List<BigDecimal> rates;
+    List<AdminStep> adminSteps;
+
+    @Value
+    @Builder
+    public static class AdminStep {
+        Long adminTariffId;
+        LocalDate validFrom;
+        LocalDate validTo;
+        BigDecimal ratePercent;
+        String label;
+    }
+}
@@ -34,6 +34,7 @@ public class TariffResponse {
         private double tariffAmount;    // itemPrice * rate
         private String label;
         private String source;
+        private boolean unpriced;       // no admin or dataset rate covers this segment
 
         public String getFrom() { return from; }
         public void setFrom(String from) { this.from = from; }
@@ -51,6 +52,8 @@ public class TariffResponse {
         public String getLabel() { return label; }
         public void setSource(String source) { this.source = source; }
         public String getSource() { return source;}
+        public boolean isUnpriced() { return unpriced; }
+        public void setUnpriced(boolean unpriced) { this.unpriced = unpriced; }
     }
     public double getItemPrice() {
         return itemPrice;
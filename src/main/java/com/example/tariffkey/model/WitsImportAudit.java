@@ -0,0 +1,47 @@
+package com.example.tariffkey.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "wits_import_audit")
+public class WitsImportAudit {
+
+    @Id
+    @Column(name = "source_file")
+    private String sourceFile;
+
+    @Column(name = "finished_at", nullable = false)
+    private OffsetDateTime finishedAt;
+
+    /** Drawn from wits_import_audit_change_seq whenever the archive's rows change; commits in order (V13). */
+    @Column(name = "change_seq")
+    private Long changeSeq;
+
+    /** SHA-256 of the archive as last imported; null for rows written by the Python importer. */
+    @Column(name = "content_sha256", length = 64)
+    private String contentSha256;
+
+    @Column(name = "row_count")
+    private Long rowCount;
+
+    /** Rows inserted, updated or deleted by the last import of this archive. */
+    @Column(name = "changed_rows")
+    private Long changedRows;
+
+    /** Comma-separated reporter codes contained in the archive. */
+    @Column(name = "reporters", columnDefinition = "TEXT")
+    private String reporters;
+}
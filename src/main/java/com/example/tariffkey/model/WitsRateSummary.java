@@ -0,0 +1,43 @@
+package com.example.tariffkey.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * One rate per (reporter, partner, product, year), derived from {@code wits_tariffs}
+ * by the importers. {@code latest} marks the most recent year of each route/product.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "wits_rate_summary")
+public class WitsRateSummary {
+
+    @EmbeddedId
+    private WitsRateSummaryId id;
+
+    @Column(name = "simple_average")
+    private BigDecimal simpleAverage;
+
+    @Column(name = "nomen_code", nullable = false, length = 10)
+    private String nomenCode;
+
+    @Column(name = "est_code", length = 10)
+    private String estCode;
+
+    @Column(name = "source_file", nullable = false)
+    private String sourceFile;
+
+    @Column(name = "is_latest", nullable = false)
+    private boolean latest;
+}
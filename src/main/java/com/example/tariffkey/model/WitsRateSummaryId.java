@@ -0,0 +1,28 @@
+package com.example.tariffkey.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Embeddable
+public class WitsRateSummaryId implements Serializable {
+
+    @Column(name = "reporter_iso", length = 10)
+    private String reporterIso;
+
+    @Column(name = "partner_code", length = 10)
+    private String partnerCode;
+
+    @Column(name = "product_code", length = 20)
+    private String productCode;
+
+    @Column(name = "\"year\"")
+    private Integer year;
+}
@@ -2,7 +2,9 @@ package com.example.tariffkey.repository;
 
 import com.example.tariffkey.model.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.time.OffsetDateTime;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -10,7 +12,18 @@ import java.util.Optional;
 public interface ProductRepository extends JpaRepository<Product, Long> {
     Optional<Product> findByCode(String code);
 
+    List<Product> findByCodeIn(Collection<String> codes);
+
     List<Product> findByHsCodeIn(Collection<String> hsCodes);
 
     Optional<Product> findByHsCode(String hsCode);
+
+    /** Row count and latest write; every insert, edit and delete moves one of them. */
+    @Query("select count(p) as rowCount, max(p.updatedAt) as lastUpdated from Product p")
+    CatalogStamp findCatalogStamp();
+
+    interface CatalogStamp {
+        long getRowCount();
+        OffsetDateTime getLastUpdated();
+    }
 }
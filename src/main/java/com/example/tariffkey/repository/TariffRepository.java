@@ -1,11 +1,14 @@
 package com.example.tariffkey.repository;
 
 import com.example.tariffkey.model.Tariff;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,8 +30,63 @@ public interface TariffRepository extends JpaRepository<Tariff, Long> {
             @Param("windowStart") LocalDate windowStart,
             @Param("windowEnd") LocalDate windowEnd);
 
+    /**
+     * Transaction-scoped advisory lock on one route. Row locks only cover ranges that
+     * already exist, so two writers adding the first range of a route would both pass
+     * the overlap check; taking this lock first makes the second wait for the first to commit.
+     */
+    @Query(value = """
+            SELECT 1 FROM (
+                SELECT pg_advisory_xact_lock(hashtext(:origin || '|' || :destination || '|' || :product))
+            ) AS route_lock
+            """, nativeQuery = true)
+    Integer lockRoute(
+            @Param("origin") String originCountry,
+            @Param("destination") String destinationCountry,
+            @Param("product") String product);
+
+    /** Same ranges as {@link #findActiveTariffs}, row-locked so they cannot change under the caller. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("""
+            SELECT t FROM Tariff t
+            WHERE t.originCountry = :origin
+              AND t.destinationCountry = :destination
+              AND t.product = :product
+              AND t.validFrom <= :windowEnd
+              AND t.validTo >= :windowStart
+            ORDER BY t.validFrom DESC
+            """)
+    List<Tariff> lockOverlappingTariffs(
+            @Param("origin") String originCountry,
+            @Param("destination") String destinationCountry,
+            @Param("product") String product,
+            @Param("windowStart") LocalDate windowStart,
+            @Param("windowEnd") LocalDate windowEnd);
+
+    /**
+     * Row count, highest id and latest update of a route's tariffs. Together they change
+     * on every insert, edit and delete through the application, whichever instance made it.
+     */
+    @Query("""
+            SELECT COUNT(t) AS rowCount, MAX(t.id) AS maxId, MAX(t.updatedAt) AS lastUpdated
+            FROM Tariff t
+            WHERE t.originCountry = :origin
+              AND t.destinationCountry = :destination
+              AND t.product = :product
+            """)
+    RouteStamp findRouteStamp(
+            @Param("origin") String originCountry,
+            @Param("destination") String destinationCountry,
+            @Param("product") String product);
+
     Optional<Tariff> findTopByOriginCountryAndDestinationCountryAndProductOrderByValidFromDesc(
             String originCountry,
             String destinationCountry,
             String product);
+
+    interface RouteStamp {
+        long getRowCount();
+        Long getMaxId();
+        OffsetDateTime getLastUpdated();
+    }
 }
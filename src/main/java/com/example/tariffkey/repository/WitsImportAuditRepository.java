@@ -0,0 +1,16 @@
+package com.example.tariffkey.repository;
+
+import com.example.tariffkey.model.WitsImportAudit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface WitsImportAuditRepository extends JpaRepository<WitsImportAudit, String> {
+
+    @Query("select max(a.changeSeq) from WitsImportAudit a")
+    Optional<Long> findLatestChangeSeq();
+
+    List<WitsImportAudit> findByChangeSeqGreaterThan(Long changeSeq);
+}
@@ -0,0 +1,26 @@
+package com.example.tariffkey.repository;
+
+import com.example.tariffkey.model.WitsRateSummary;
+import com.example.tariffkey.model.WitsRateSummaryId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface WitsRateSummaryRepository extends JpaRepository<WitsRateSummary, WitsRateSummaryId> {
+
+    Optional<WitsRateSummary> findFirstByIdReporterIsoAndIdPartnerCodeAndIdProductCodeAndLatestTrue(
+            String reporterIso,
+            String partnerCode,
+            String productCode);
+
+    @Query("""
+            select s.id.reporterIso as reporterIso,
+                   min(s.sourceFile) as sourceFile
+            from WitsRateSummary s
+            group by s.id.reporterIso
+            order by s.id.reporterIso asc
+            """)
+    List<WitsTariffRepository.ReporterSample> findReporterSamples();
+}
@@ -2,28 +2,59 @@ package com.example.tariffkey.security;
 
 import com.example.tariffkey.service.*;
 import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Authenticates bearer tokens. The token is verified once, or found in
+ * {@link VerifiedTokenCache} when the client has sent it before; by default
+ * the principal is built from its claims and {@link UserAccessCache}, so no
+ * {@code users} query runs per request. Set {@code security.jwt.stateless=false}
+ * to load the user from the database on every request instead.
+ */
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
-    private final JwtService jwtService;
     private final CustomUserDetailsService userDetailsService;
+    private final UserAccessCache userAccessCache;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final boolean stateless;
+    private final Timer authenticatedTimer;
+    private final Timer rejectedTimer;
 
-    public JwtAuthenticationFilter(JwtService jwtService, CustomUserDetailsService userDetailsService) {
-        this.jwtService = jwtService;
+    public JwtAuthenticationFilter(CustomUserDetailsService userDetailsService,
+                                   UserAccessCache userAccessCache, VerifiedTokenCache verifiedTokenCache,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${security.jwt.stateless:true}") boolean stateless) {
         this.userDetailsService = userDetailsService;
+        this.userAccessCache = userAccessCache;
+        this.verifiedTokenCache = verifiedTokenCache;
+        this.stateless = stateless;
+        this.authenticatedTimer = authTimer(meterRegistry, "authenticated");
+        this.rejectedTimer = authTimer(meterRegistry, "rejected");
+    }
+
+    private static Timer authTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("tariffkey.auth.jwt")
+                .description("Bearer token parsing, user lookup and validation")
+                .tag("outcome", outcome)
+                .register(registry);
     }
 
     @Override
@@ -39,25 +70,32 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
-        final String username;
+        final JwtService.VerifiedToken token;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
             filterChain.doFilter(request, response);
             return;
         }
 
+        long started = System.nanoTime();
         jwt = authHeader.substring(7);
         try {
-            username = jwtService.extractUsername(jwt);
+            token = verifiedTokenCache.verify(jwt);
         } catch (JwtException | IllegalArgumentException ex) {
+            rejectedTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
             filterChain.doFilter(request, response);
             return;
         }
 
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (token.subject() != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            // Signature and expiry were checked by verify(), so only the principal is left to resolve.
+            UserDetails userDetails = stateless
+                    ? principalFromClaims(token)
+                    : this.userDetailsService.loadUserByUsername(token.subject());
 
-            if (jwtService.isTokenValid(jwt, userDetails)) {
+            boolean valid = userDetails != null;
+            (valid ? authenticatedTimer : rejectedTimer).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            if (valid) {
                 UsernamePasswordAuthenticationToken authToken =
                         new UsernamePasswordAuthenticationToken(
                                 userDetails,
@@ -71,4 +109,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    // The cached role wins over the claim, so role changes and revocations apply
+    // before the token expires.
+    private UserDetails principalFromClaims(JwtService.VerifiedToken token) {
+        Optional<String> role = userAccessCache.currentRole(token.subject(), token.issuedAt());
+        return role.map(current -> User.withUsername(token.subject())
+                        .password("")
+                        .authorities(current)
+                        .build())
+                .orElse(null);
+    }
 }
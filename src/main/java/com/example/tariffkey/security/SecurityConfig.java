@@ -1,19 +1,26 @@
 package com.example.tariffkey.security;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.util.StringUtils;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -52,6 +59,38 @@ public class SecurityConfig {
         return provider;
     }
 
+    /**
+     * Prometheus scrapes with HTTP Basic as a dedicated metrics user rather than with a
+     * JWT, so meters are not public and the scraper needs no expiring token. With no
+     * metrics.scrape.password configured every scrape is refused.
+     */
+    @Bean
+    @Order(1)
+    public SecurityFilterChain metricsFilterChain(HttpSecurity http,
+                                                  @Value("${metrics.scrape.username:prometheus}") String username,
+                                                  @Value("${metrics.scrape.password:}") String password) throws Exception {
+        InMemoryUserDetailsManager scrapers = new InMemoryUserDetailsManager();
+        if (StringUtils.hasText(password)) {
+            scrapers.createUser(User.withUsername(username)
+                    .password(passwordEncoder().encode(password))
+                    .authorities("METRICS")
+                    .build());
+        }
+        DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+        provider.setUserDetailsService(scrapers);
+        provider.setPasswordEncoder(passwordEncoder());
+
+        http
+            .securityMatcher("/actuator/prometheus")
+            .csrf(csrf -> csrf.disable())
+            .authorizeHttpRequests(auth -> auth.anyRequest().hasAuthority("METRICS"))
+            .httpBasic(Customizer.withDefaults())
+            .sessionManagement(sess -> sess.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+            .authenticationManager(new ProviderManager(provider));
+
+        return http.build();
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -63,10 +102,13 @@ public class SecurityConfig {
                 .requestMatchers(HttpMethod.POST, "/auth/register").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/lookups/**").permitAll()
                 .requestMatchers(HttpMethod.GET, "/api/news").permitAll()
+                .requestMatchers(HttpMethod.GET, "/actuator/health/**").permitAll()
                 .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()
 
                 // Tariff endpoints (secured)
                 .requestMatchers(HttpMethod.POST, "/api/tariff/calculate").hasAnyAuthority("ADMIN","USER")
+                .requestMatchers(HttpMethod.POST, "/api/tariff/calculate/batch").hasAnyAuthority("ADMIN","USER")
+                .requestMatchers(HttpMethod.POST, "/api/tariff/compare").hasAnyAuthority("ADMIN","USER")
                 .requestMatchers(HttpMethod.POST, "/api/tariff/quote").hasAnyAuthority("ADMIN","USER")
                 .requestMatchers(HttpMethod.POST, "/api/tariff/history").hasAnyAuthority("ADMIN","USER")
                 .requestMatchers(HttpMethod.GET, "/api/tariff/**").hasAnyAuthority("ADMIN","USER")
@@ -0,0 +1,254 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.Tariff;
+import com.example.tariffkey.repository.TariffRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory index of admin tariffs, one sorted timeline per (origin, destination,
+ * product) route. Each timeline keeps the ranges ordered by {@code validFrom} with
+ * a running maximum of {@code validTo}, so "active for window" and "overlapping
+ * ranges" are a binary search plus a scan of the matches only.
+ *
+ * Writes must go through {@link TariffManagementService}, which calls
+ * {@link #put} / {@link #remove}; a periodic reload covers rows edited elsewhere.
+ */
+@Service
+public class AdminTariffIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(AdminTariffIndex.class);
+
+    private final TariffRepository tariffRepository;
+    private volatile Map<String, RouteTimeline> routes;
+
+    public AdminTariffIndex(TariffRepository tariffRepository) {
+        this.tariffRepository = tariffRepository;
+    }
+
+    /** Newest tariff whose validity overlaps the window, mirroring findActiveTariffs().get(0). */
+    public Optional<Tariff> findActive(String origin, String destination, String product,
+                                       LocalDate windowStart, LocalDate windowEnd) {
+        RouteTimeline timeline = routes().get(routeKey(origin, destination, product));
+        return timeline == null ? Optional.empty() : Optional.ofNullable(timeline.newestOverlapping(windowStart, windowEnd));
+    }
+
+    /** Tariff with the latest {@code validFrom} on the route. */
+    public Optional<Tariff> findLatest(String origin, String destination, String product) {
+        RouteTimeline timeline = routes().get(routeKey(origin, destination, product));
+        return timeline == null ? Optional.empty() : Optional.of(timeline.latest());
+    }
+
+    /**
+     * Copies of every tariff overlapping the window, newest first. Copies are returned
+     * so callers can modify and save them without disturbing the index.
+     */
+    public List<Tariff> findOverlapping(String origin, String destination, String product,
+                                        LocalDate windowStart, LocalDate windowEnd) {
+        RouteTimeline timeline = routes().get(routeKey(origin, destination, product));
+        if (timeline == null) {
+            return List.of();
+        }
+        return timeline.overlapping(windowStart, windowEnd).stream()
+                .map(AdminTariffIndex::copyOf)
+                .toList();
+    }
+
+    /** Origins with at least one admin tariff for the destination and product. */
+    public List<String> originsFor(String destination, String product) {
+        String suffix = "|" + destination + "|" + product;
+        List<String> origins = new ArrayList<>();
+        for (String key : routes().keySet()) {
+            if (key.endsWith(suffix)) {
+                origins.add(key.substring(0, key.length() - suffix.length()));
+            }
+        }
+        return origins;
+    }
+
+    public synchronized void put(Tariff tariff) {
+        String key = routeKey(tariff.getOriginCountry(), tariff.getDestinationCountry(), tariff.getProduct());
+        Map<String, RouteTimeline> current = routes();
+        List<Tariff> entries = new ArrayList<>();
+        RouteTimeline existing = current.get(key);
+        if (existing != null) {
+            for (Tariff entry : existing.tariffs) {
+                if (!entry.getId().equals(tariff.getId())) {
+                    entries.add(entry);
+                }
+            }
+        }
+        entries.add(copyOf(tariff));
+        current.put(key, RouteTimeline.of(entries));
+    }
+
+    public synchronized void remove(Tariff tariff) {
+        String key = routeKey(tariff.getOriginCountry(), tariff.getDestinationCountry(), tariff.getProduct());
+        Map<String, RouteTimeline> current = routes();
+        RouteTimeline existing = current.get(key);
+        if (existing == null) {
+            return;
+        }
+        List<Tariff> entries = Arrays.stream(existing.tariffs)
+                .filter(entry -> !entry.getId().equals(tariff.getId()))
+                .toList();
+        if (entries.isEmpty()) {
+            current.remove(key);
+        } else {
+            current.put(key, RouteTimeline.of(entries));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${admin-tariffs.refresh-interval-ms:300000}",
+            initialDelayString = "${admin-tariffs.refresh-interval-ms:300000}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (DataAccessException ex) {
+            log.warn("Unable to reload admin tariff index: {}", ex.getMessage());
+        }
+    }
+
+    public synchronized void reload() {
+        Map<String, RouteTimeline> loaded = new ConcurrentHashMap<>();
+        tariffRepository.findAll().stream()
+                .collect(Collectors.groupingBy(
+                        t -> routeKey(t.getOriginCountry(), t.getDestinationCountry(), t.getProduct()),
+                        HashMap::new,
+                        Collectors.toList()))
+                .forEach((key, entries) -> loaded.put(key, RouteTimeline.of(entries)));
+        routes = loaded;
+    }
+
+    private Map<String, RouteTimeline> routes() {
+        Map<String, RouteTimeline> current = routes;
+        if (current == null) {
+            synchronized (this) {
+                if (routes == null) {
+                    reload();
+                }
+                current = routes;
+            }
+        }
+        return current;
+    }
+
+    static String routeKey(String origin, String destination, String product) {
+        return origin + "|" + destination + "|" + product;
+    }
+
+    private static Tariff copyOf(Tariff tariff) {
+        return Tariff.builder()
+                .id(tariff.getId())
+                .product(tariff.getProduct())
+                .originCountry(tariff.getOriginCountry())
+                .destinationCountry(tariff.getDestinationCountry())
+                .rate(tariff.getRate())
+                .validFrom(tariff.getValidFrom())
+                .validTo(tariff.getValidTo())
+                .label(tariff.getLabel())
+                .notes(tariff.getNotes())
+                .createdBy(tariff.getCreatedBy())
+                .createdAt(tariff.getCreatedAt())
+                .updatedAt(tariff.getUpdatedAt())
+                .build();
+    }
+
+    /**
+     * Immutable, validFrom-ordered ranges for one route. {@code maxValidTo[i]} is the
+     * latest end date among entries {@code 0..i}; it only grows, so entries that end
+     * before a window can be skipped without looking at them.
+     */
+    private static final class RouteTimeline {
+
+        private final Tariff[] tariffs;
+        private final long[] validFrom;
+        private final long[] validTo;
+        private final long[] maxValidTo;
+
+        private RouteTimeline(Tariff[] tariffs) {
+            this.tariffs = tariffs;
+            this.validFrom = new long[tariffs.length];
+            this.validTo = new long[tariffs.length];
+            this.maxValidTo = new long[tariffs.length];
+            long runningMax = Long.MIN_VALUE;
+            for (int i = 0; i < tariffs.length; i++) {
+                validFrom[i] = tariffs[i].getValidFrom().toEpochDay();
+                validTo[i] = tariffs[i].getValidTo().toEpochDay();
+                runningMax = Math.max(runningMax, validTo[i]);
+                maxValidTo[i] = runningMax;
+            }
+        }
+
+        static RouteTimeline of(Collection<Tariff> entries) {
+            Tariff[] sorted = entries.toArray(new Tariff[0]);
+            Arrays.sort(sorted, Comparator.comparing(Tariff::getValidFrom)
+                    .thenComparing(Tariff::getId, Comparator.nullsFirst(Comparator.naturalOrder())));
+            return new RouteTimeline(sorted);
+        }
+
+        Tariff latest() {
+            return tariffs[tariffs.length - 1];
+        }
+
+        Tariff newestOverlapping(LocalDate windowStart, LocalDate windowEnd) {
+            long start = windowStart.toEpochDay();
+            for (int i = lastStartingBy(windowEnd.toEpochDay()); i >= 0 && maxValidTo[i] >= start; i--) {
+                if (validTo[i] >= start) {
+                    return tariffs[i];
+                }
+            }
+            return null;
+        }
+
+        List<Tariff> overlapping(LocalDate windowStart, LocalDate windowEnd) {
+            long start = windowStart.toEpochDay();
+            List<Tariff> matches = new ArrayList<>();
+            for (int i = lastStartingBy(windowEnd.toEpochDay()); i >= 0 && maxValidTo[i] >= start; i--) {
+                if (validTo[i] >= start) {
+                    matches.add(tariffs[i]);
+                }
+            }
+            return matches;
+        }
+
+        // Index of the last entry with validFrom <= day, or -1.
+        private int lastStartingBy(long day) {
+            int low = 0;
+            int high = validFrom.length - 1;
+            int result = -1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (validFrom[mid] <= day) {
+                    result = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.example.tariffkey.service;
 
 import com.example.tariffkey.exception.TariffNotFoundException;
 import com.example.tariffkey.model.*;
-import com.example.tariffkey.repository.FeeScheduleRepository;
 import com.example.tariffkey.repository.ProductRepository;
-import com.example.tariffkey.repository.TariffRepository;
-import com.example.tariffkey.repository.WitsTariffRepository;
+import com.example.tariffkey.repository.WitsRateSummaryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -13,26 +15,85 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 @Service
 public class DefaultQuoteService {
 
+    private static final int MAX_BATCH_LINES = 1000;
+    // Segment rate for days with neither an admin tariff nor any dataset rate.
+    private static final SegmentRate UNPRICED = new SegmentRate(0.0, "No tariff data", null);
+
     private final ProductRepository productRepository;
-    private final FeeScheduleRepository feeScheduleRepository;
-    private final TariffRepository tariffRepository;
-    private final WitsTariffRepository witsTariffRepository;
+    private final FeeScheduleService feeScheduleService;
+    private final AdminTariffIndex adminTariffIndex;
+    private final WitsRateSummaryRepository witsRateSummaryRepository;
+    private final WitsRateIndex witsRateIndex;
+    private final LookupService lookupService;
+    private final Timer adminRateTimer;
+    private final Timer datasetRateTimer;
+    private final Timer notFoundRateTimer;
+    private final Timer productStageTimer;
+    private final Timer rateStageTimer;
+    private final Timer pricingStageTimer;
+    private final MeterRegistry meterRegistry;
+    private final Map<SummaryKey, Flight> summaryReadsInFlight = new ConcurrentHashMap<>();
+    private final Map<String, Counter> coalescedByRoute = new ConcurrentHashMap<>();
+    private final Counter summaryReads;
+    private final int maxCoalescedRoutes;
 
     @org.springframework.beans.factory.annotation.Autowired
     public DefaultQuoteService(ProductRepository productRepository,
-                               FeeScheduleRepository feeScheduleRepository,
-                               TariffRepository tariffRepository,
-                               WitsTariffRepository witsTariffRepository) {
+                               FeeScheduleService feeScheduleService,
+                               AdminTariffIndex adminTariffIndex,
+                               WitsRateSummaryRepository witsRateSummaryRepository,
+                               WitsRateIndex witsRateIndex,
+                               LookupService lookupService,
+                               MeterRegistry meterRegistry,
+                               @Value("${quote.summary.coalesced.max-routes:100}") int maxCoalescedRoutes) {
         this.productRepository = productRepository;
-        this.feeScheduleRepository = feeScheduleRepository;
-        this.tariffRepository = tariffRepository;
-        this.witsTariffRepository = witsTariffRepository;
+        this.feeScheduleService = feeScheduleService;
+        this.adminTariffIndex = adminTariffIndex;
+        this.witsRateSummaryRepository = witsRateSummaryRepository;
+        this.witsRateIndex = witsRateIndex;
+        this.lookupService = lookupService;
+        this.adminRateTimer = rateTimer(meterRegistry, "admin");
+        this.datasetRateTimer = rateTimer(meterRegistry, "dataset");
+        this.notFoundRateTimer = rateTimer(meterRegistry, "not_found");
+        this.productStageTimer = stageTimer(meterRegistry, "product");
+        this.rateStageTimer = stageTimer(meterRegistry, "rate");
+        this.pricingStageTimer = stageTimer(meterRegistry, "pricing");
+        this.meterRegistry = meterRegistry;
+        this.summaryReads = Counter.builder("tariffkey.quote.summary.reads")
+                .description("wits_rate_summary reads run because the rate index was unavailable")
+                .register(meterRegistry);
+        this.maxCoalescedRoutes = maxCoalescedRoutes;
+    }
+
+    private static Timer rateTimer(MeterRegistry registry, String source) {
+        return Timer.builder("tariffkey.quote.rate")
+                .description("Tariff rate resolution by where the rate came from")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    private static Timer stageTimer(MeterRegistry registry, String stage) {
+        return Timer.builder("tariffkey.quote.stage")
+                .description("Time spent in each stage of a priced quote")
+                .tag("stage", stage)
+                .register(registry);
     }
 
     public TariffApiResponse fetchQuote(TariffApiRequest request) {
@@ -46,15 +107,28 @@ public class DefaultQuoteService {
         String yearValue = trimToNull(request.getYear());
         Integer requestedYear = parseYear(yearValue);
 
-        LocalDate effectiveStart = windowStart != null ? windowStart : LocalDate.now();
-        LocalDate effectiveEnd = windowEnd != null ? windowEnd : effectiveStart;
-        if (effectiveStart.isAfter(effectiveEnd)) {
-            LocalDate swap = effectiveStart;
-            effectiveStart = effectiveEnd;
-            effectiveEnd = swap;
+        return resolveRate(originCountry, destinationCountry, productCode,
+                Window.of(windowStart, windowEnd), requestedYear);
+    }
+
+    private TariffApiResponse resolveRate(String originCountry, String destinationCountry, String productCode,
+                                          Window window, Integer requestedYear) {
+        long started = System.nanoTime();
+        Timer outcome = notFoundRateTimer;
+        try {
+            Tariff adminTariff = resolveAdminTariff(originCountry, destinationCountry, productCode,
+                    window.start(), window.end());
+            TariffApiResponse response = quoteFor(adminTariff, originCountry, destinationCountry,
+                    productCode, requestedYear);
+            outcome = adminTariff != null ? adminRateTimer : datasetRateTimer;
+            return response;
+        } finally {
+            outcome.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
         }
+    }
 
-        Tariff adminTariff = resolveAdminTariff(originCountry, destinationCountry, productCode, effectiveStart, effectiveEnd);
+    private TariffApiResponse quoteFor(Tariff adminTariff, String originCountry, String destinationCountry,
+                                       String productCode, Integer requestedYear) {
         if (adminTariff != null) {
             return TariffApiResponse.builder()
                     .tariffRate(adminTariff.getRate())
@@ -69,31 +143,111 @@ public class DefaultQuoteService {
                     .build();
         }
 
-        Optional<WitsTariff> fromDataset = requestedYear == null
+        WitsRateIndex.Snapshot index = witsRateIndex.snapshot();
+        if (index != null) {
+            return fetchFromIndex(index, originCountry, destinationCountry, productCode, requestedYear);
+        }
+
+        return readSummaryShared(new SummaryKey(originCountry, destinationCountry, productCode, requestedYear));
+    }
+
+    /**
+     * The summary table is only read while the rate index is unavailable, which is also
+     * when every quote reaches the database at once. Concurrent callers for the same
+     * key wait for the first caller's read and get the same response or exception;
+     * nothing is kept once it finishes. The shared response must be treated as
+     * read-only, as the batch path already does.
+     */
+    private TariffApiResponse readSummaryShared(SummaryKey key) {
+        Flight flight = new Flight();
+        Flight running = summaryReadsInFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalescedCounter(key).increment();
+            try {
+                return running.result.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw ex;
+            }
+        }
+
+        summaryReads.increment();
+        try {
+            TariffApiResponse response = readSummary(key.origin(), key.destination(), key.product(), key.year());
+            flight.result.complete(response);
+            return response;
+        } catch (RuntimeException | Error ex) {
+            // Waiters must always be released, whatever the leader hit.
+            flight.result.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            summaryReadsInFlight.remove(key, flight);
+        }
+    }
+
+    // Tagged per route up to the cap so a hot route stands out; the rest share "other".
+    private Counter coalescedCounter(SummaryKey key) {
+        String route = routeKey(key.origin(), key.destination(), key.product());
+        Counter counter = coalescedByRoute.get(route);
+        if (counter != null) {
+            return counter;
+        }
+        String tag = coalescedByRoute.size() < maxCoalescedRoutes ? route : "other";
+        return coalescedByRoute.computeIfAbsent(tag, t -> Counter.builder("tariffkey.quote.summary.coalesced")
+                .description("Callers that joined a wits_rate_summary read already running for the route")
+                .tag("route", t)
+                .register(meterRegistry));
+    }
+
+    private TariffApiResponse readSummary(String originCountry, String destinationCountry, String productCode,
+                                          Integer requestedYear) {
+        // Both lookups are primary-key probes on the narrow summary table.
+        Optional<WitsRateSummary> fromDataset = requestedYear == null
                 ? Optional.empty()
-                : witsTariffRepository.findFirstByReporterIsoAndPartnerCodeAndProductCodeAndYearOrderByIdAsc(
-                originCountry, destinationCountry, productCode, requestedYear);
+                : witsRateSummaryRepository.findById(new WitsRateSummaryId(
+                originCountry, destinationCountry, productCode, requestedYear));
 
         if (fromDataset.isEmpty()) {
-            fromDataset = witsTariffRepository.findFirstByReporterIsoAndPartnerCodeAndProductCodeOrderByYearDesc(
+            fromDataset = witsRateSummaryRepository.findFirstByIdReporterIsoAndIdPartnerCodeAndIdProductCodeAndLatestTrue(
                     originCountry, destinationCountry, productCode);
         }
 
-        WitsTariff match = fromDataset.orElseThrow(() ->
+        WitsRateSummary match = fromDataset.orElseThrow(() ->
                 new TariffNotFoundException("No tariff data found for the selected combination"));
 
-        double rateDecimal = percentageToRate(match.getSimpleAverage());
+        return datasetResponse(percentageToRate(match.getSimpleAverage()), match.getEstCode(),
+                match.getId().getYear(), match.getNomenCode(), match.getSourceFile());
+    }
+
+    private TariffApiResponse fetchFromIndex(WitsRateIndex.Snapshot index, String originCountry,
+                                             String destinationCountry, String productCode, Integer requestedYear) {
+        int slot = requestedYear == null
+                ? WitsRateIndex.NOT_FOUND
+                : index.find(originCountry, destinationCountry, productCode, requestedYear);
+        if (slot == WitsRateIndex.NOT_FOUND) {
+            slot = index.findLatest(originCountry, destinationCountry, productCode);
+        }
+        if (slot == WitsRateIndex.NOT_FOUND) {
+            throw new TariffNotFoundException("No tariff data found for the selected combination");
+        }
+        return datasetResponse(index.rateAt(slot), index.estCodeAt(slot), index.yearAt(slot),
+                index.nomenCodeAt(slot), index.sourceFileAt(slot));
+    }
 
+    private TariffApiResponse datasetResponse(double rateDecimal, String estCode, Integer year,
+                                              String nomenCode, String sourceFile) {
         return TariffApiResponse.builder()
                 .httpStatus(200)
                 .tariffRate(rateDecimal)
-                .tariffTypes(match.getEstCode() == null ? new String[0] : new String[]{match.getEstCode()})
-                .year(match.getYear())
-                .nomenclature(match.getNomenCode())
+                .tariffTypes(estCode == null ? new String[0] : new String[]{estCode})
+                .year(year)
+                .nomenclature(nomenCode)
                 .label("Dataset tariff rate")
-                .sourceLabel(match.getNomenCode())
+                .sourceLabel(nomenCode)
                 .fromCache(true)
-                .url("wits_tariffs:" + match.getSourceFile())
+                .url("wits_tariffs:" + sourceFile)
                 .body("Lookup from imported dataset")
                 .build();
     }
@@ -126,48 +280,274 @@ public class DefaultQuoteService {
   }
 
     public TariffResponse calculateQuote(TariffRequest request) {
-        if (request.getQuantity() == null || request.getQuantity() <= 0) {
-            throw new IllegalArgumentException("Quantity must be greater than zero");
-        }
+        requirePositiveQuantity(request);
 
+        long started = System.nanoTime();
         Product product = resolveProduct(request);
         String hsCode = resolveHsCode(request, product);
+        long resolved = System.nanoTime();
+        productStageTimer.record(resolved - started, TimeUnit.NANOSECONDS);
 
-        TariffApiRequest apiRequest = TariffApiRequest.builder()
-                .originCountry(requireCode(request.getFromCountry(), "origin country"))
-                .destCountry(requireCode(request.getToCountry(), "destination country"))
-                .hs6(requireCode(hsCode, "product code"))
-                .year(resolveYear(request))
-                .build();
-
+        TariffApiRequest apiRequest = toApiRequest(request, hsCode);
         LocalDate windowStart = toLocalDate(request.getCalculationFrom());
         LocalDate windowEnd = toLocalDate(request.getCalculationTo());
         TariffApiResponse apiResponse = fetchQuote(apiRequest, windowStart, windowEnd);
         if (apiResponse.getHttpStatus() >= 400) {
             throw new IllegalStateException("Failed to retrieve tariff data from imported dataset");
         }
+        long rated = System.nanoTime();
+        rateStageTimer.record(rated - resolved, TimeUnit.NANOSECONDS);
 
+        try {
+            return priceQuote(request, product, hsCode, apiResponse);
+        } finally {
+            pricingStageTimer.record(System.nanoTime() - rated, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private TariffResponse priceQuote(TariffRequest request, Product product, String hsCode,
+                                      TariffApiResponse apiResponse) {
         Double storedBasePrice = product != null ? product.getBasePrice() : null;
+        boolean pricePersisted = false;
+        if (request.getCustomBasePrice() != null && product == null) {
+            persistProductIfMissing(request, hsCode, request.getCustomBasePrice());
+            pricePersisted = true;
+        }
+        return priceLine(request, hsCode, apiResponse, storedBasePrice, pricePersisted);
+    }
+
+    /**
+     * Prices every line of a purchase order in one pass. Products are fetched with
+     * set-based queries, admin tariffs, fees and WITS rates come from memory, and
+     * identical route/year/window lookups are only resolved once.
+     * Lines that cannot be priced carry a message instead of failing the batch.
+     */
+    public TariffBatchResponse calculateBatch(TariffBatchRequest batch) {
+        List<TariffRequest> lines = batch == null ? null : batch.getLines();
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("At least one line is required");
+        }
+        if (lines.size() > MAX_BATCH_LINES) {
+            throw new IllegalArgumentException("A batch may contain at most " + MAX_BATCH_LINES + " lines");
+        }
+
+        Set<String> productCodes = new HashSet<>();
+        Set<String> hsCandidates = new HashSet<>();
+        for (TariffRequest line : lines) {
+            String code = trimToNull(line.getProduct());
+            String hsCode = trimToNull(line.getHsCode());
+            if (code != null) {
+                productCodes.add(code);
+                if (looksLikeHsCode(code)) {
+                    hsCandidates.add(code);
+                }
+            }
+            if (hsCode != null) {
+                hsCandidates.add(hsCode);
+            }
+        }
+        Map<String, Product> productsByCode = productCodes.isEmpty() ? new HashMap<>()
+                : productRepository.findByCodeIn(productCodes).stream()
+                .collect(Collectors.toMap(Product::getCode, p -> p, (left, right) -> left, HashMap::new));
+        Map<String, Product> productsByHs = hsCandidates.isEmpty() ? new HashMap<>()
+                : productRepository.findByHsCodeIn(hsCandidates).stream()
+                .collect(Collectors.toMap(Product::getHsCode, p -> p, (left, right) -> left, HashMap::new));
+
+        List<BatchLine> planned = new ArrayList<>(lines.size());
+        for (TariffRequest line : lines) {
+            try {
+                requirePositiveQuantity(line);
+                Product product = resolveProduct(line, productsByCode, productsByHs);
+                String hsCode = resolveHsCode(line, product);
+                TariffApiRequest apiRequest = toApiRequest(line, hsCode);
+                Window window = Window.of(toLocalDate(line.getCalculationFrom()), toLocalDate(line.getCalculationTo()));
+                planned.add(new BatchLine(line, product, hsCode, apiRequest, window, null));
+            } catch (IllegalArgumentException ex) {
+                planned.add(new BatchLine(line, null, null, null, null, ex.getMessage()));
+            }
+        }
+
+        Map<String, TariffApiResponse> quotes = new HashMap<>();
+        List<TariffResponse> responses = new ArrayList<>(planned.size());
+        double orderTotal = 0.0;
+        int pricedLines = 0;
+        for (BatchLine planLine : planned) {
+            if (planLine.error() != null) {
+                responses.add(failedLine(planLine.request(), planLine.error()));
+                continue;
+            }
+            TariffApiRequest apiRequest = planLine.apiRequest();
+            Window window = planLine.window();
+            String route = routeKey(apiRequest.getOriginCountry(), apiRequest.getDestCountry(), apiRequest.getHs6());
+            String quoteKey = route + "|" + apiRequest.getYear() + "|" + window.start() + "|" + window.end();
+            TariffApiResponse apiResponse;
+            try {
+                apiResponse = quotes.computeIfAbsent(quoteKey, key -> resolveRate(
+                        apiRequest.getOriginCountry(),
+                        apiRequest.getDestCountry(),
+                        apiRequest.getHs6(),
+                        window,
+                        parseYear(apiRequest.getYear())));
+            } catch (TariffNotFoundException ex) {
+                responses.add(failedLine(planLine.request(), ex.getMessage()));
+                continue;
+            }
+
+            TariffRequest request = planLine.request();
+            Product product = planLine.product();
+            Double storedBasePrice = product != null ? product.getBasePrice() : null;
+            boolean pricePersisted = false;
+            if (request.getCustomBasePrice() != null && product == null) {
+                String code = productCodeFor(request, planLine.hsCode());
+                if (!productsByCode.containsKey(code)) {
+                    productsByCode.put(code, persistProductIfMissing(request, planLine.hsCode(),
+                            request.getCustomBasePrice()));
+                    pricePersisted = true;
+                }
+            }
+            TariffResponse response = priceLine(request, planLine.hsCode(), apiResponse,
+                    storedBasePrice, pricePersisted);
+            if (response.getTotalPrice() != null) {
+                orderTotal += response.getTotalPrice();
+                pricedLines++;
+            }
+            responses.add(response);
+        }
+
+        return TariffBatchResponse.builder()
+                .lines(responses)
+                .orderTotal(orderTotal)
+                .pricedLines(pricedLines)
+                .build();
+    }
+
+    /**
+     * Ranks origins for one product into one destination. Without an explicit origin
+     * set, every origin with dataset rates (from the lookup graph) or an admin tariff
+     * for the route is compared. Rates, admin overrides and fees all come from memory
+     * and the base price is read once, so nothing is queried per origin and nothing is
+     * persisted. The lowest rate, and so the lowest landed cost, comes first.
+     */
+    public TariffCompareResponse compareOrigins(TariffCompareRequest request) {
+        String destination = requireCode(request.getDestCountry(), "destination country");
+        String hsCode = requireCode(request.getHsCode(), "product");
+        if (request.getQuantity() == null || request.getQuantity() <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+        }
+        Set<String> origins = new TreeSet<>();
+        if (request.getOrigins() != null && !request.getOrigins().isEmpty()) {
+            for (String origin : request.getOrigins()) {
+                String code = trimToNull(origin);
+                if (code != null) {
+                    origins.add(code);
+                }
+            }
+        } else {
+            lookupService.getReportersForPartnerProduct(destination, hsCode)
+                    .forEach(reporter -> origins.add(reporter.code()));
+            origins.addAll(adminTariffIndex.originsFor(destination, hsCode));
+        }
+        if (origins.size() > MAX_BATCH_LINES) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_LINES + " origins can be compared");
+        }
+
+        Double basePrice = request.getCustomBasePrice() != null
+                ? request.getCustomBasePrice()
+                : productRepository.findByHsCode(hsCode).map(Product::getBasePrice).orElse(null);
+        Window window = Window.of(toLocalDate(request.getCalculationFrom()), toLocalDate(request.getCalculationTo()));
+
+        List<TariffCompareResponse.OriginQuote> priced = new ArrayList<>();
+        List<TariffCompareResponse.OriginQuote> unavailable = new ArrayList<>();
+        for (String origin : origins) {
+            TariffRequest line = compareLine(request, origin, destination, hsCode, basePrice);
+            TariffApiResponse apiResponse;
+            try {
+                apiResponse = resolveRate(origin, destination, hsCode, window, parseYear(resolveYear(line)));
+            } catch (TariffNotFoundException ex) {
+                unavailable.add(TariffCompareResponse.OriginQuote.builder()
+                        .originCountry(origin)
+                        .message(ex.getMessage())
+                        .build());
+                continue;
+            }
+            TariffResponse response = priceLine(line, hsCode, apiResponse, basePrice, false);
+            priced.add(TariffCompareResponse.OriginQuote.builder()
+                    .originCountry(origin)
+                    .tariffRate(response.getTariffRate())
+                    .tariffAmount(response.getTotalPrice() != null ? response.getTariffAmount() : null)
+                    .totalPrice(response.getTotalPrice())
+                    .year(apiResponse.getYear())
+                    .label(response.getLabel())
+                    .source(response.getSource())
+                    .adminTariffId(response.getAdminTariffId())
+                    .message(response.getTotalPrice() == null ? response.getMessage() : null)
+                    .build());
+        }
+        // Origins are visited in code order, so a stable sort keeps ties in code order.
+        priced.sort(Comparator.comparing(TariffCompareResponse.OriginQuote::getTariffRate));
+
+        List<TariffCompareResponse.OriginQuote> ranked = new ArrayList<>(origins.size());
+        for (TariffCompareResponse.OriginQuote quote : priced) {
+            ranked.add(quote.toBuilder().rank(ranked.size() + 1).build());
+        }
+        ranked.addAll(unavailable);
+        return TariffCompareResponse.builder()
+                .destCountry(destination)
+                .hsCode(hsCode)
+                .basePrice(basePrice)
+                .origins(ranked)
+                .build();
+    }
+
+    private static TariffRequest compareLine(TariffCompareRequest request, String origin, String destination,
+                                             String hsCode, Double basePrice) {
+        TariffRequest line = new TariffRequest();
+        line.setFromCountry(origin);
+        line.setToCountry(destination);
+        line.setProduct(hsCode);
+        line.setHsCode(hsCode);
+        line.setQuantity(request.getQuantity());
+        line.setCustomBasePrice(basePrice);
+        line.setHandling(request.isHandling());
+        line.setInspection(request.isInspection());
+        line.setProcessing(request.isProcessing());
+        line.setOthers(request.isOthers());
+        line.setCalculationFrom(request.getCalculationFrom());
+        line.setCalculationTo(request.getCalculationTo());
+        return line;
+    }
+
+    private TariffResponse priceLine(TariffRequest request, String hsCode, TariffApiResponse apiResponse,
+                                     Double storedBasePrice, boolean pricePersisted) {
         Double confirmedBasePrice = request.getCustomBasePrice();
         if (confirmedBasePrice == null) {
             return buildPriceRequiredResponse(request, hsCode, apiResponse, storedBasePrice);
         }
 
         double basePrice = confirmedBasePrice;
-        boolean pricePersisted = false;
-        if (product == null) {
-            product = persistProductIfMissing(request, hsCode, basePrice);
-            pricePersisted = true;
-        }
-
         double itemPrice = basePrice * request.getQuantity();
         double rateDecimal = apiResponse.getTariffRate();
         double tariffAmount = itemPrice * rateDecimal;
+        List<TariffResponse.Segment> segments = segment(request, hsCode, basePrice);
+        if (!segments.isEmpty()) {
+            tariffAmount = 0.0;
+            double ratePercentDays = 0.0;
+            long pricedDays = 0;
+            for (TariffResponse.Segment segment : segments) {
+                tariffAmount += segment.getTariffAmount();
+                if (!segment.isUnpriced()) {
+                    ratePercentDays += segment.getRatePercent() * segmentDays(segment);
+                    pricedDays += segmentDays(segment);
+                }
+            }
+            // Weighted by days rather than derived from the amount, which is 0/0 for a zero base price.
+            rateDecimal = pricedDays == 0 ? 0.0 : ratePercentDays / pricedDays / 100.0;
+        }
 
-        double handlingFee = request.isHandling() ? feeAmount("handling") : 0.0;
-        double inspectionFee = request.isInspection() ? feeAmount("inspection") : 0.0;
-        double processingFee = request.isProcessing() ? feeAmount("processing") : 0.0;
-        double otherFees = request.isOthers() ? feeAmount("others") : 0.0;
+        double handlingFee = request.isHandling() ? feeScheduleService.amount("handling") : 0.0;
+        double inspectionFee = request.isInspection() ? feeScheduleService.amount("inspection") : 0.0;
+        double processingFee = request.isProcessing() ? feeScheduleService.amount("processing") : 0.0;
+        double otherFees = request.isOthers() ? feeScheduleService.amount("others") : 0.0;
 
         TariffResponse response = new TariffResponse();
         response.setItemPrice(itemPrice);
@@ -178,7 +558,28 @@ public class DefaultQuoteService {
         response.setProcessingFee(processingFee);
         response.setOtherFees(otherFees);
         response.setTotalPrice(itemPrice + tariffAmount + handlingFee + inspectionFee + processingFee + otherFees);
-        response.setSegments(new ArrayList<>());
+        response.setSegments(segments);
+        response.setPricePersisted(pricePersisted);
+        if (segments.stream().anyMatch(TariffResponse.Segment::isUnpriced)) {
+            response.setMessage("No tariff rate covers part of the calculation window; those days carry no tariff.");
+        }
+        if (!segments.isEmpty() && adminTariffOutsideWindow(apiResponse, segments)) {
+            // The only admin tariff is the route's latest one and it missed the window, so
+            // describe the quote by the segments that were actually priced.
+            TariffResponse.Segment longest = segments.get(0);
+            for (TariffResponse.Segment segment : segments) {
+                if (segmentDays(segment) > segmentDays(longest)) {
+                    longest = segment;
+                }
+            }
+            response.setLabel(longest.getLabel());
+            response.setSource(longest.getSource());
+            response.setAdminTariffId(null);
+            response.setValidFrom(segments.get(0).getFrom());
+            response.setValidTo(segments.get(segments.size() - 1).getTo());
+            response.setNotes(null);
+            return response;
+        }
         response.setLabel(StringUtils.hasText(apiResponse.getLabel())
                 ? apiResponse.getLabel()
                 : apiResponse.isFromCache() ? "Dataset tariff rate" : "Average tariff rate (WITS)");
@@ -189,10 +590,166 @@ public class DefaultQuoteService {
         response.setValidFrom(formatLocalDate(apiResponse.getValidFrom()));
         response.setValidTo(formatLocalDate(apiResponse.getValidTo()));
         response.setNotes(apiResponse.getNotes());
-        response.setPricePersisted(pricePersisted);
         return response;
     }
 
+    // resolveAdminTariff() only falls back to findLatest() when nothing overlaps the window.
+    private static boolean adminTariffOutsideWindow(TariffApiResponse apiResponse,
+                                                    List<TariffResponse.Segment> segments) {
+        if (apiResponse.getAdminTariffId() == null) {
+            return false;
+        }
+        LocalDate windowStart = LocalDate.parse(segments.get(0).getFrom());
+        LocalDate windowEnd = LocalDate.parse(segments.get(segments.size() - 1).getTo());
+        return apiResponse.getValidTo().isBefore(windowStart) || apiResponse.getValidFrom().isAfter(windowEnd);
+    }
+
+    private static long segmentDays(TariffResponse.Segment segment) {
+        return LocalDate.parse(segment.getTo()).toEpochDay() - LocalDate.parse(segment.getFrom()).toEpochDay() + 1;
+    }
+
+    /**
+     * Splits the calculation window at every admin validity boundary and every new
+     * calendar year, and prices each piece with the newest admin tariff covering it,
+     * else that year's WITS rate, else the route's latest WITS rate, else marks it
+     * unpriced. The admin tariff the quote resolved is never reused for days outside
+     * its validity. Quantity is prorated by days and adjacent pieces at the same rate
+     * are merged. Empty when the request has no calculation window.
+     */
+    private List<TariffResponse.Segment> segment(TariffRequest request, String hsCode, double basePrice) {
+        LocalDate from = toLocalDate(request.getCalculationFrom());
+        LocalDate to = toLocalDate(request.getCalculationTo());
+        if (from == null || to == null) {
+            return new ArrayList<>();
+        }
+        Window window = Window.of(from, to);
+        String origin = trimToNull(request.getFromCountry());
+        String destination = trimToNull(request.getToCountry());
+        long start = window.start().toEpochDay();
+        long end = window.end().toEpochDay() + 1;
+
+        // Both indexes are in memory: one overlap scan for admin ranges, one probe per year for WITS.
+        List<Tariff> adminTariffs = adminTariffIndex.findOverlapping(origin, destination, hsCode,
+                window.start(), window.end());
+        TreeSet<Long> cuts = new TreeSet<>(List.of(start, end));
+        for (Tariff tariff : adminTariffs) {
+            addCut(cuts, tariff.getValidFrom().toEpochDay(), start, end);
+            addCut(cuts, tariff.getValidTo().toEpochDay() + 1, start, end);
+        }
+        for (int year = window.start().getYear() + 1; year <= window.end().getYear(); year++) {
+            cuts.add(LocalDate.of(year, 1, 1).toEpochDay());
+        }
+
+        Map<Integer, SegmentRate> yearRates = new HashMap<>();
+        double totalDays = end - start;
+        List<TariffResponse.Segment> segments = new ArrayList<>();
+        SegmentRate currentRate = null;
+        TariffResponse.Segment current = null;
+        Long pieceStart = null;
+        for (long cut : cuts) {
+            if (pieceStart != null) {
+                long first = pieceStart;
+                SegmentRate rate = adminRate(adminTariffs, first, cut - 1);
+                if (rate == null) {
+                    rate = yearRates.computeIfAbsent(LocalDate.ofEpochDay(first).getYear(),
+                            year -> datasetRate(origin, destination, hsCode, year)
+                                    .or(() -> latestDatasetRate(origin, destination, hsCode))
+                                    .orElse(UNPRICED));
+                }
+                double portion = request.getQuantity() * (cut - first) / totalDays;
+                if (rate.equals(currentRate)) {
+                    portion += current.getQuantityPortion();
+                } else {
+                    current = new TariffResponse.Segment();
+                    current.setFrom(formatLocalDate(LocalDate.ofEpochDay(first)));
+                    current.setRatePercent(rate.rate() * 100.0);
+                    current.setLabel(rate.label());
+                    current.setSource(rate.source());
+                    current.setUnpriced(rate == UNPRICED);
+                    segments.add(current);
+                    currentRate = rate;
+                }
+                current.setTo(formatLocalDate(LocalDate.ofEpochDay(cut - 1)));
+                current.setQuantityPortion(portion);
+                current.setItemPrice(portion * basePrice);
+                current.setTariffAmount(portion * basePrice * rate.rate());
+            }
+            pieceStart = cut;
+        }
+        return segments;
+    }
+
+    private static void addCut(TreeSet<Long> cuts, long day, long start, long end) {
+        if (day > start && day < end) {
+            cuts.add(day);
+        }
+    }
+
+    // Newest admin tariff (the list is newest first) valid for every day of [first, last].
+    private static SegmentRate adminRate(List<Tariff> adminTariffs, long first, long last) {
+        for (Tariff tariff : adminTariffs) {
+            if (tariff.getValidFrom().toEpochDay() <= first && tariff.getValidTo().toEpochDay() >= last) {
+                return new SegmentRate(tariff.getRate(), tariff.getLabel(), "admin:" + tariff.getId());
+            }
+        }
+        return null;
+    }
+
+    private Optional<SegmentRate> datasetRate(String origin, String destination, String hsCode, int year) {
+        WitsRateIndex.Snapshot index = witsRateIndex.snapshot();
+        if (index != null) {
+            int slot = index.find(origin, destination, hsCode, year);
+            if (slot == WitsRateIndex.NOT_FOUND) {
+                return Optional.empty();
+            }
+            return Optional.of(new SegmentRate(index.rateAt(slot), "Dataset tariff rate " + year,
+                    index.nomenCodeAt(slot)));
+        }
+        return witsRateSummaryRepository.findById(new WitsRateSummaryId(origin, destination, hsCode, year))
+                .map(match -> new SegmentRate(percentageToRate(match.getSimpleAverage()),
+                        "Dataset tariff rate " + year, match.getNomenCode()));
+    }
+
+    private Optional<SegmentRate> latestDatasetRate(String origin, String destination, String hsCode) {
+        WitsRateIndex.Snapshot index = witsRateIndex.snapshot();
+        if (index != null) {
+            int slot = index.findLatest(origin, destination, hsCode);
+            if (slot == WitsRateIndex.NOT_FOUND) {
+                return Optional.empty();
+            }
+            return Optional.of(new SegmentRate(index.rateAt(slot), "Dataset tariff rate " + index.yearAt(slot),
+                    index.nomenCodeAt(slot)));
+        }
+        return witsRateSummaryRepository.findFirstByIdReporterIsoAndIdPartnerCodeAndIdProductCodeAndLatestTrue(
+                        origin, destination, hsCode)
+                .map(match -> new SegmentRate(percentageToRate(match.getSimpleAverage()),
+                        "Dataset tariff rate " + match.getId().getYear(), match.getNomenCode()));
+    }
+
+    private TariffResponse failedLine(TariffRequest request, String message) {
+        TariffResponse response = new TariffResponse();
+        response.setMissingProduct(request.getProduct());
+        response.setMissingHsCode(request.getHsCode());
+        response.setSegments(new ArrayList<>());
+        response.setMessage(message);
+        return response;
+    }
+
+    private void requirePositiveQuantity(TariffRequest request) {
+        if (request.getQuantity() == null || request.getQuantity() <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+        }
+    }
+
+    private TariffApiRequest toApiRequest(TariffRequest request, String hsCode) {
+        return TariffApiRequest.builder()
+                .originCountry(requireCode(request.getFromCountry(), "origin country"))
+                .destCountry(requireCode(request.getToCountry(), "destination country"))
+                .hs6(requireCode(hsCode, "product code"))
+                .year(resolveYear(request))
+                .build();
+    }
+
     private TariffResponse buildPriceRequiredResponse(TariffRequest request, String hsCode, TariffApiResponse apiResponse, Double suggestedBasePrice) {
         TariffResponse response = new TariffResponse();
         response.setPriceRequired(true);
@@ -231,17 +788,15 @@ public class DefaultQuoteService {
 
     private Tariff resolveAdminTariff(String originCountry, String destinationCountry, String productCode,
                                       LocalDate windowStart, LocalDate windowEnd) {
-        List<Tariff> overlapping = tariffRepository.findActiveTariffs(
-                originCountry, destinationCountry, productCode, windowStart, windowEnd);
-        if (!overlapping.isEmpty()) {
-            return overlapping.get(0);
-        }
-        return tariffRepository
-                .findTopByOriginCountryAndDestinationCountryAndProductOrderByValidFromDesc(
-                        originCountry, destinationCountry, productCode)
+        return adminTariffIndex.findActive(originCountry, destinationCountry, productCode, windowStart, windowEnd)
+                .or(() -> adminTariffIndex.findLatest(originCountry, destinationCountry, productCode))
                 .orElse(null);
     }
 
+    private static String routeKey(String origin, String destination, String product) {
+        return origin + "|" + destination + "|" + product;
+    }
+
     private LocalDate toLocalDate(String iso) {
         if (!StringUtils.hasText(iso)) {
             return null;
@@ -280,6 +835,22 @@ public class DefaultQuoteService {
         return null;
     }
 
+    private Product resolveProduct(TariffRequest request, Map<String, Product> productsByCode,
+                                   Map<String, Product> productsByHs) {
+        String requestedCode = trimToNull(request.getProduct());
+        if (requestedCode != null && productsByCode.containsKey(requestedCode)) {
+            return productsByCode.get(requestedCode);
+        }
+        String hsCode = trimToNull(request.getHsCode());
+        if (hsCode != null && productsByHs.containsKey(hsCode)) {
+            return productsByHs.get(hsCode);
+        }
+        if (requestedCode != null && looksLikeHsCode(requestedCode)) {
+            return productsByHs.get(requestedCode);
+        }
+        return null;
+    }
+
     private String resolveHsCode(TariffRequest request, Product product) {
         String hsCode = trimToNull(request.getHsCode());
         if (hsCode != null) {
@@ -296,26 +867,23 @@ public class DefaultQuoteService {
     }
 
     private Product persistProductIfMissing(TariffRequest request, String hsCode, double basePrice) {
-        String code = trimToNull(request.getProduct());
-        if (code == null) {
-            code = hsCode;
-        }
-        if (looksLikeHsCode(code)) {
-            code = "hs_" + hsCode;
-        }
         Product newProduct = Product.builder()
-                .code(code)
+                .code(productCodeFor(request, hsCode))
                 .hsCode(hsCode)
                 .basePrice(basePrice)
                 .build();
         return productRepository.save(newProduct);
     }
 
-    private double feeAmount(String code) {
-        return feeScheduleRepository.findById(code)
-                .map(FeeSchedule::getAmount)
-                .map(BigDecimal::doubleValue)
-                .orElse(0.0);
+    private String productCodeFor(TariffRequest request, String hsCode) {
+        String code = trimToNull(request.getProduct());
+        if (code == null) {
+            code = hsCode;
+        }
+        if (looksLikeHsCode(code)) {
+            code = "hs_" + hsCode;
+        }
+        return code;
     }
 
     private double percentageToRate(BigDecimal percentage) {
@@ -329,4 +897,26 @@ public class DefaultQuoteService {
         String normalized = trimToNull(value);
         return normalized != null && normalized.matches("^[0-9]{4,10}$");
     }
+
+    private record Window(LocalDate start, LocalDate end) {
+        static Window of(LocalDate windowStart, LocalDate windowEnd) {
+            LocalDate effectiveStart = windowStart != null ? windowStart : LocalDate.now();
+            LocalDate effectiveEnd = windowEnd != null ? windowEnd : effectiveStart;
+            if (effectiveStart.isAfter(effectiveEnd)) {
+                return new Window(effectiveEnd, effectiveStart);
+            }
+            return new Window(effectiveStart, effectiveEnd);
+        }
+    }
+
+    private record SummaryKey(String origin, String destination, String product, Integer year) {}
+
+    private static final class Flight {
+        final CompletableFuture<TariffApiResponse> result = new CompletableFuture<>();
+    }
+
+    private record SegmentRate(double rate, String label, String source) {}
+
+    private record BatchLine(TariffRequest request, Product product, String hsCode,
+                             TariffApiRequest apiRequest, Window window, String error) {}
 }
@@ -0,0 +1,120 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.FeeSchedule;
+import com.example.tariffkey.repository.FeeScheduleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps an immutable copy of the tiny {@code fee_schedule} table so quotes do not
+ * need a round-trip per fee. Writes go through {@link #updateFee}, which refreshes
+ * the snapshot immediately; a periodic reload picks up edits made directly in the
+ * database.
+ */
+@Service
+public class FeeScheduleService {
+
+    private static final Logger log = LoggerFactory.getLogger(FeeScheduleService.class);
+
+    private final FeeScheduleRepository feeScheduleRepository;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private volatile Map<String, Double> amounts;
+
+    public FeeScheduleService(FeeScheduleRepository feeScheduleRepository) {
+        this.feeScheduleRepository = feeScheduleRepository;
+    }
+
+    /** Fee amount for the code, or 0 when the code is not configured. */
+    public double amount(String code) {
+        Map<String, Double> current = amounts;
+        if (current == null) {
+            current = refresh();
+        }
+        Double amount = current.get(code);
+        if (amount == null) {
+            misses.increment();
+            return 0.0;
+        }
+        hits.increment();
+        return amount;
+    }
+
+    public List<FeeSchedule> getAllFees() {
+        return feeScheduleRepository.findAll(Sort.by("code"));
+    }
+
+    public FeeSchedule updateFee(String code, BigDecimal amount) {
+        if (!StringUtils.hasText(code)) {
+            throw new IllegalArgumentException("Fee code is required");
+        }
+        if (amount == null || amount.signum() < 0) {
+            throw new IllegalArgumentException("Fee amount must be zero or greater");
+        }
+        FeeSchedule saved = feeScheduleRepository.save(FeeSchedule.builder()
+                .code(code.trim())
+                .amount(amount)
+                .build());
+        refresh();
+        return saved;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${fees.refresh-interval-ms:300000}",
+            initialDelayString = "${fees.refresh-interval-ms:300000}")
+    public void reloadIfChanged() {
+        try {
+            Map<String, Double> latest = readAll();
+            if (!latest.equals(amounts)) {
+                log.info("Fee schedule changed in the database, refreshing snapshot");
+                swap(latest);
+            }
+        } catch (DataAccessException ex) {
+            log.warn("Unable to reload fee schedule: {}", ex.getMessage());
+        }
+    }
+
+    public synchronized Map<String, Double> refresh() {
+        return swap(readAll());
+    }
+
+    public FeeScheduleStats stats() {
+        Map<String, Double> current = amounts;
+        return new FeeScheduleStats(current == null ? 0 : current.size(),
+                hits.sum(), misses.sum(), refreshes.sum());
+    }
+
+    private Map<String, Double> swap(Map<String, Double> latest) {
+        amounts = latest;
+        refreshes.increment();
+        return latest;
+    }
+
+    private Map<String, Double> readAll() {
+        Map<String, Double> loaded = new HashMap<>();
+        for (FeeSchedule fee : feeScheduleRepository.findAll()) {
+            loaded.put(fee.getCode(), fee.getAmount() == null ? 0.0 : fee.getAmount().doubleValue());
+        }
+        return Map.copyOf(loaded);
+    }
+
+    public record FeeScheduleStats(int fees, long hits, long misses, long refreshes) {}
+}
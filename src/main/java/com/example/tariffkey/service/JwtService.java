@@ -1,6 +1,7 @@
 package com.example.tariffkey.service;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -10,6 +11,7 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -19,6 +21,7 @@ import java.util.function.Function;
 public class JwtService {
 
     private final SecretKey key;
+    private final JwtParser parser;
     private final long expirationTime;
 
     public JwtService(
@@ -26,6 +29,7 @@ public class JwtService {
             @Value("${jwt.expiration}") long expirationTime
     ) {
         this.key = Keys.hmacShaKeyFor(secretKey.getBytes()); // HS256 key
+        this.parser = Jwts.parserBuilder().setSigningKey(key).build(); // immutable, thread-safe
         this.expirationTime = expirationTime;
     }
 
@@ -52,6 +56,19 @@ public class JwtService {
 
 
 
+    /**
+     * Verifies signature and expiry in a single parse and returns the claims the
+     * filter needs. Throws {@link io.jsonwebtoken.JwtException} for any invalid token.
+     */
+    public VerifiedToken verify(String token) {
+        Claims claims = extractAllClaims(token);
+        return new VerifiedToken(
+                claims.getSubject(),
+                claims.get("role", String.class),
+                toInstant(claims.getIssuedAt()),
+                toInstant(claims.getExpiration()));
+    }
+
     // Extract username
     public String extractUsername(String token) {
         return extractClaim(token, Claims::getSubject);
@@ -64,24 +81,18 @@ public class JwtService {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     // Validate token
     public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        final Claims claims = extractAllClaims(token);
+        return claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date());
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private static Instant toInstant(Date date) {
+        return date == null ? null : date.toInstant();
     }
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
+    public record VerifiedToken(String subject, String role, Instant issuedAt, Instant expiresAt) {}
 }
@@ -4,93 +4,162 @@ import com.example.tariffkey.model.LookupOption;
 import com.example.tariffkey.model.LookupResponse;
 import com.example.tariffkey.model.Product;
 import com.example.tariffkey.model.WitsCountryMetadata;
-import com.example.tariffkey.model.WitsProductMetadata;
-import com.example.tariffkey.model.WitsProductMetadataId;
 import com.example.tariffkey.repository.ProductRepository;
+import com.example.tariffkey.repository.WitsImportAuditRepository;
 import com.example.tariffkey.repository.WitsCountryMetadataRepository;
-import com.example.tariffkey.repository.WitsProductMetadataRepository;
+import com.example.tariffkey.repository.WitsRateSummaryRepository;
 import com.example.tariffkey.repository.WitsTariffRepository;
 import com.example.tariffkey.util.IsoCountryLookup;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * Serves the reporter → partner → product cascade used by the public lookup
+ * endpoints. The whole graph, with labels already resolved, is built from one
+ * streamed scan of {@code wits_rate_summary} at startup and after each WITS import,
+ * and tagged with the import version so HTTP caches can revalidate cheaply.
+ * Imports that name their changed reporters only rebuild those reporters' nodes.
+ */
 @Service
 public class LookupService {
 
     private static final Logger log = LoggerFactory.getLogger(LookupService.class);
 
-    private final WitsTariffRepository witsTariffRepository;
+    private static final String ROUTE_PRODUCTS_SQL = """
+            select distinct reporter_iso, partner_code, product_code, nomen_code
+            from wits_rate_summary
+            %s
+            order by reporter_iso, partner_code, product_code, nomen_code
+            """;
+
+    private final WitsRateSummaryRepository witsRateSummaryRepository;
     private final WitsCountryMetadataRepository countryMetadataRepository;
-    private final WitsProductMetadataRepository productMetadataRepository;
+    private final ProductSearchIndex productSearchIndex;
     private final ProductRepository productRepository;
+    private final WitsImportAuditRepository importAuditRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
     private final Map<String, String> countryLabelCache = new ConcurrentHashMap<>();
     private final Map<String, String> productLabelCache = new ConcurrentHashMap<>();
+    private final Counter countryLabelHits;
+    private final Counter countryLabelMisses;
+    private final Counter productLabelHits;
+    private final Counter productLabelMisses;
+    private volatile LookupGraph graph;
 
-    public LookupService(WitsTariffRepository witsTariffRepository,
+    public LookupService(WitsRateSummaryRepository witsRateSummaryRepository,
                          WitsCountryMetadataRepository countryMetadataRepository,
-                         WitsProductMetadataRepository productMetadataRepository,
-                         ProductRepository productRepository) {
-        this.witsTariffRepository = witsTariffRepository;
+                         ProductSearchIndex productSearchIndex,
+                         ProductRepository productRepository,
+                         WitsImportAuditRepository importAuditRepository,
+                         JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         MeterRegistry meterRegistry) {
+        this.witsRateSummaryRepository = witsRateSummaryRepository;
         this.countryMetadataRepository = countryMetadataRepository;
-        this.productMetadataRepository = productMetadataRepository;
+        this.productSearchIndex = productSearchIndex;
         this.productRepository = productRepository;
+        this.importAuditRepository = importAuditRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.countryLabelHits = labelCacheCounter(meterRegistry, "country", "hit");
+        this.countryLabelMisses = labelCacheCounter(meterRegistry, "country", "miss");
+        this.productLabelHits = labelCacheCounter(meterRegistry, "product", "hit");
+        this.productLabelMisses = labelCacheCounter(meterRegistry, "product", "miss");
+        Gauge.builder("tariffkey.lookup.label.cache.size", countryLabelCache, Map::size)
+                .tag("cache", "country")
+                .register(meterRegistry);
+        Gauge.builder("tariffkey.lookup.label.cache.size", productLabelCache, Map::size)
+                .tag("cache", "product")
+                .register(meterRegistry);
+    }
+
+    private static Counter labelCacheCounter(MeterRegistry registry, String cache, String result) {
+        return Counter.builder("tariffkey.lookup.label.cache")
+                .description("Label cache lookups while building the lookup graph")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /** Version tag of the graph currently being served; changes with every WITS import. */
+    public String currentVersion() {
+        return graph().version();
+    }
+
+    /**
+     * Version tag for product lists, which also depend on which HS codes have a
+     * local base price. The products part is read from the table on every call, so
+     * edits, deletes and inserts made by any instance move it at once.
+     */
+    public String currentProductsVersion() {
+        ProductRepository.CatalogStamp stamp = productRepository.findCatalogStamp();
+        OffsetDateTime lastUpdated = stamp.getLastUpdated();
+        long updatedMicros = lastUpdated == null
+                ? 0L
+                : ChronoUnit.MICROS.between(Instant.EPOCH, lastUpdated.toInstant());
+        return currentVersion() + "." + Long.toHexString(stamp.getRowCount())
+                + "-" + Long.toHexString(updatedMicros);
     }
 
     public LookupResponse getReporters() {
-        List<LookupOption> reporters = witsTariffRepository.findReporterSamples().stream()
-                .map(sample -> toReporterOption(sample.getReporterIso(), sample.getSourceFile()))
-                .sorted(Comparator.comparing(LookupOption::label))
-                .toList();
-        return new LookupResponse(reporters);
+        return new LookupResponse(graph().reporters());
     }
 
     public List<LookupOption> getPartnersForReporter(String reporterCode) {
-        ensureReporterExists(reporterCode);
-        List<String> partnerCodes = witsTariffRepository.findPartnersByReporter(reporterCode);
-        if (partnerCodes.isEmpty()) {
+        ReporterNode reporter = requireReporter(reporterCode);
+        if (reporter.partners().isEmpty()) {
             throw new IllegalArgumentException("No partners available for reporter " + reporterCode);
         }
-        return partnerCodes.stream()
-                .map(code -> new LookupOption(code, countryLabel(code)))
-                .collect(Collectors.toList());
+        return reporter.partners();
+    }
+
+    /**
+     * Throws what {@link #getProductsForRoute} would for an unknown reporter or a
+     * partner without products, using the in-memory graph only.
+     */
+    public void requireRoute(String reporterCode, String partnerCode) {
+        routeEntries(reporterCode, partnerCode);
     }
 
     public List<LookupOption> getProductsForRoute(String reporterCode, String partnerCode) {
-        ensureReporterExists(reporterCode);
-        if (!StringUtils.hasText(partnerCode)) {
-            throw new IllegalArgumentException("Partner code is required");
-        }
-        List<WitsTariffRepository.ProductSample> samples = witsTariffRepository.findProductSamplesByRoute(
-                reporterCode, partnerCode);
-        if (samples.isEmpty()) {
-            throw new IllegalArgumentException("No products available for the selected countries");
-        }
-        List<String> hsCodes = samples.stream()
-                .map(WitsTariffRepository.ProductSample::getProductCode)
-                .toList();
+        ProductEntry[] entries = routeEntries(reporterCode, partnerCode);
+        List<String> hsCodes = Arrays.stream(entries).map(ProductEntry::hsCode).toList();
 
         Map<String, Product> pricedProducts = productRepository.findByHsCodeIn(hsCodes).stream()
                 .collect(Collectors.toMap(Product::getHsCode, product -> product, (left, right) -> left));
 
         Map<String, LookupOption> deduped = new LinkedHashMap<>();
-        for (WitsTariffRepository.ProductSample sample : samples) {
-            String hsCode = sample.getProductCode();
+        for (ProductEntry entry : entries) {
+            String hsCode = entry.hsCode();
             Product product = pricedProducts.get(hsCode);
             boolean priceAvailable = product != null;
-            String baseLabel = productLabel(sample.getNomenCode(), hsCode);
-            String label = priceAvailable ? baseLabel : baseLabel + " (price required)";
+            String label = priceAvailable ? entry.label() : entry.label() + " (price required)";
             String optionCode = priceAvailable ? product.getCode() : hsCode;
             String optionHsCode = priceAvailable ? product.getHsCode() : hsCode;
             deduped.putIfAbsent(optionCode, new LookupOption(optionCode, label, optionHsCode, priceAvailable));
@@ -98,19 +167,212 @@ public class LookupService {
         return new ArrayList<>(deduped.values());
     }
 
-    private LookupOption toReporterOption(String code, String sourceFile) {
-        String label = countryMetadataRepository.findById(code)
-                .map(this::formatCountryLabel)
-                .orElseGet(() -> fallbackReporterLabel(code, sourceFile));
-        countryLabelCache.putIfAbsent(code, label);
+    /** Reporters with tariff data towards the partner, answered from the inverted partner index. */
+    public List<LookupOption> getReportersForPartner(String partnerCode) {
+        if (!StringUtils.hasText(partnerCode)) {
+            throw new IllegalArgumentException("Partner code is required");
+        }
+        return graph().reportersByPartner().getOrDefault(partnerCode, List.of());
+    }
+
+    /** Reporters with tariff data for the product towards the partner. */
+    public List<LookupOption> getReportersForPartnerProduct(String partnerCode, String hsCode) {
+        if (!StringUtils.hasText(partnerCode) || !StringUtils.hasText(hsCode)) {
+            throw new IllegalArgumentException("Partner and HS code are required");
+        }
+        LookupGraph current = graph();
+        List<LookupOption> reporters = new ArrayList<>();
+        for (LookupOption reporter : current.reportersByPartner().getOrDefault(partnerCode, List.of())) {
+            ProductEntry[] entries = current.reporterNodes().get(reporter.code()).productsByPartner().get(partnerCode);
+            // Entries follow the scan's product_code order.
+            if (Arrays.binarySearch(entries, new ProductEntry(hsCode, null),
+                    Comparator.comparing(ProductEntry::hsCode)) >= 0) {
+                reporters.add(reporter);
+            }
+        }
+        return reporters;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuild();
+    }
+
+    @EventListener
+    public void onDatasetChanged(WitsDatasetChangedEvent event) {
+        if (event.isFullReload()) {
+            rebuild();
+        } else {
+            refreshReporters(event.changedReporters());
+        }
+    }
+
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        try {
+            graph = transactionTemplate.execute(status -> buildGraph(null, null));
+            log.info("Lookup graph {} built: {} reporters in {} ms", graph.version(),
+                    graph.reporters().size(), (System.nanoTime() - started) / 1_000_000);
+        } catch (DataAccessException ex) {
+            log.warn("Lookup graph rebuild failed, keeping previous graph: {}", ex.getMessage());
+        }
+    }
+
+    /** Rebuilds the nodes of the given reporters and reuses every other node of the current graph. */
+    public synchronized void refreshReporters(Set<String> reporters) {
+        LookupGraph previous = graph;
+        if (previous == null) {
+            rebuild();
+            return;
+        }
+        long started = System.nanoTime();
+        try {
+            graph = transactionTemplate.execute(status -> buildGraph(previous, Set.copyOf(reporters)));
+            log.info("Lookup graph {} refreshed for reporters {} in {} ms", graph.version(),
+                    reporters, (System.nanoTime() - started) / 1_000_000);
+        } catch (DataAccessException ex) {
+            log.warn("Lookup graph refresh failed, keeping previous graph: {}", ex.getMessage());
+        }
+    }
+
+    private LookupGraph graph() {
+        LookupGraph current = graph;
+        if (current == null) {
+            synchronized (this) {
+                if (graph == null) {
+                    graph = transactionTemplate.execute(status -> buildGraph(null, null));
+                }
+                current = graph;
+            }
+        }
+        return current;
+    }
+
+    // Full build when previous is null; otherwise only changedReporters are re-read.
+    private LookupGraph buildGraph(LookupGraph previous, Set<String> changedReporters) {
+        Long importVersion = importAuditRepository.findLatestChangeSeq().orElse(null);
+        List<String> params = previous == null ? List.of() : List.copyOf(changedReporters);
+        Map<String, String> countryLabels = loadCountryLabels();
+        if (previous == null) {
+            productSearchIndex.refreshIfChanged();
+            countryLabelCache.clear();
+            productLabelCache.clear();
+        }
+        countryLabelCache.putAll(countryLabels);
+
+        Map<String, String> reporterSources = new LinkedHashMap<>();
+        for (WitsTariffRepository.ReporterSample sample : witsRateSummaryRepository.findReporterSamples()) {
+            reporterSources.put(sample.getReporterIso(), sample.getSourceFile());
+        }
+
+        GraphBuilder builder = new GraphBuilder();
+        String sql = ROUTE_PRODUCTS_SQL.formatted(previous == null ? "" : WitsRateIndex.reporterFilter(params.size()));
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(sql);
+            for (int i = 0; i < params.size(); i++) {
+                statement.setString(i + 1, params.get(i));
+            }
+            statement.setFetchSize(10_000);
+            return statement;
+        }, rs -> {
+            builder.add(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4));
+        });
+        Map<String, Map<String, List<ProductEntry>>> routes = builder.finish();
+
+        List<LookupOption> reporters = reporterSources.entrySet().stream()
+                .map(entry -> toReporterOption(entry.getKey(), entry.getValue(), countryLabels))
+                .sorted(Comparator.comparing(LookupOption::label))
+                .toList();
+
+        Map<String, ReporterNode> nodes = new HashMap<>();
+        if (previous != null) {
+            previous.reporterNodes().forEach((code, node) -> {
+                if (!changedReporters.contains(code)) {
+                    nodes.put(code, node);
+                }
+            });
+        }
+        for (Map.Entry<String, Map<String, List<ProductEntry>>> reporter : routes.entrySet()) {
+            List<LookupOption> partners = reporter.getValue().keySet().stream()
+                    .map(code -> new LookupOption(code, countryLabel(code)))
+                    .toList();
+            Map<String, ProductEntry[]> productsByPartner = new HashMap<>();
+            reporter.getValue().forEach((partner, products) ->
+                    productsByPartner.put(partner, products.toArray(new ProductEntry[0])));
+            nodes.put(reporter.getKey(), new ReporterNode(partners, Map.copyOf(productsByPartner)));
+        }
+
+        String version = importVersion != null
+                ? "w" + Long.toHexString(importVersion)
+                : "r" + Integer.toHexString(31 * reporters.hashCode() + builder.entries);
+        return new LookupGraph(version, reporters, Map.copyOf(nodes), invertPartners(reporters, nodes));
+    }
+
+    // partner -> reporters trading with it, in the same label order as the reporter list.
+    private static Map<String, List<LookupOption>> invertPartners(List<LookupOption> reporters,
+                                                                  Map<String, ReporterNode> nodes) {
+        Map<String, List<LookupOption>> reportersByPartner = new HashMap<>();
+        for (LookupOption reporter : reporters) {
+            ReporterNode node = nodes.get(reporter.code());
+            if (node == null) {
+                continue;
+            }
+            for (LookupOption partner : node.partners()) {
+                reportersByPartner.computeIfAbsent(partner.code(), key -> new ArrayList<>()).add(reporter);
+            }
+        }
+        Map<String, List<LookupOption>> frozen = new HashMap<>();
+        reportersByPartner.forEach((partner, options) -> frozen.put(partner, List.copyOf(options)));
+        return Map.copyOf(frozen);
+    }
+
+    private ProductEntry[] routeEntries(String reporterCode, String partnerCode) {
+        ReporterNode reporter = requireReporter(reporterCode);
+        if (!StringUtils.hasText(partnerCode)) {
+            throw new IllegalArgumentException("Partner code is required");
+        }
+        ProductEntry[] entries = reporter.productsByPartner().get(partnerCode);
+        if (entries == null || entries.length == 0) {
+            throw new IllegalArgumentException("No products available for the selected countries");
+        }
+        return entries;
+    }
+
+    private ReporterNode requireReporter(String reporterCode) {
+        ReporterNode reporter = StringUtils.hasText(reporterCode) ? graph().reporterNodes().get(reporterCode) : null;
+        if (reporter == null) {
+            throw new IllegalArgumentException("Unknown reporter code: " + reporterCode);
+        }
+        return reporter;
+    }
+
+    // One query for every country label, instead of a findById per reporter and partner.
+    private Map<String, String> loadCountryLabels() {
+        Map<String, String> labels = new HashMap<>();
+        for (WitsCountryMetadata metadata : countryMetadataRepository.findAll()) {
+            labels.put(metadata.getCountryCode(), formatCountryLabel(metadata));
+        }
+        return labels;
+    }
+
+    private LookupOption toReporterOption(String code, String sourceFile, Map<String, String> countryLabels) {
+        String label = countryLabels.get(code);
+        if (label == null) {
+            label = fallbackReporterLabel(code, sourceFile);
+            countryLabelCache.putIfAbsent(code, label);
+        }
         return new LookupOption(code, label);
     }
 
+    // Every code with metadata is preloaded, so a miss falls back to the bare code.
     private String countryLabel(String code) {
-        return countryLabelCache.computeIfAbsent(code, key ->
-                countryMetadataRepository.findById(key)
-                        .map(this::formatCountryLabel)
-                        .orElse(key));
+        String cached = countryLabelCache.get(code);
+        if (cached != null) {
+            countryLabelHits.increment();
+            return cached;
+        }
+        countryLabelMisses.increment();
+        return countryLabelCache.computeIfAbsent(code, key -> key);
     }
 
     private String formatCountryLabel(WitsCountryMetadata metadata) {
@@ -166,30 +428,20 @@ public class LookupService {
         return null;
     }
 
-    private void ensureReporterExists(String reporterCode) {
-        if (!StringUtils.hasText(reporterCode) || !witsTariffRepository.existsByReporterIso(reporterCode)) {
-            throw new IllegalArgumentException("Unknown reporter code: " + reporterCode);
-        }
-    }
-
     private String productLabel(String nomenCode, String productCode) {
         String cacheKey = nomenCode + ":" + productCode;
+        String cached = productLabelCache.get(cacheKey);
+        if (cached != null) {
+            productLabelHits.increment();
+            return cached;
+        }
+        productLabelMisses.increment();
         return productLabelCache.computeIfAbsent(cacheKey, key -> resolveProductLabel(nomenCode, productCode));
     }
 
     private String resolveProductLabel(String nomenCode, String productCode) {
-        Optional<WitsProductMetadata> precise = productMetadataRepository.findById(
-                new WitsProductMetadataId(nomenCode, productCode));
-        if (precise.isPresent()) {
-            return formatProductDescription(precise.get().getDescription(), productCode);
-        }
-        Optional<WitsProductMetadata> hsLevel = productMetadataRepository.findById(
-                new WitsProductMetadataId("HS", productCode));
-        if (hsLevel.isPresent()) {
-            return formatProductDescription(hsLevel.get().getDescription(), productCode);
-        }
-        return productMetadataRepository.findFirstByIdProductCode(productCode)
-                .map(meta -> formatProductDescription(meta.getDescription(), productCode))
+        return productSearchIndex.description(nomenCode, productCode)
+                .map(description -> formatProductDescription(description, productCode))
                 .orElse("HS " + productCode);
     }
 
@@ -197,4 +449,48 @@ public class LookupService {
         String base = StringUtils.hasText(description) ? description : "HS " + productCode;
         return base + " (HS " + productCode + ")";
     }
+
+    private record LookupGraph(String version, List<LookupOption> reporters, Map<String, ReporterNode> reporterNodes,
+                               Map<String, List<LookupOption>> reportersByPartner) {}
+
+    private record ReporterNode(List<LookupOption> partners, Map<String, ProductEntry[]> productsByPartner) {}
+
+    private record ProductEntry(String hsCode, String label) {}
+
+    /**
+     * Folds the ordered (reporter, partner, product, nomen) scan into nested maps,
+     * keeping the first nomenclature per product and sharing one entry per distinct
+     * (nomen, product) pair across all routes.
+     */
+    private final class GraphBuilder {
+
+        private final Map<String, Map<String, List<ProductEntry>>> routes = new LinkedHashMap<>();
+        private final Map<String, ProductEntry> sharedEntries = new HashMap<>();
+        private List<ProductEntry> currentProducts;
+        private String currentReporter;
+        private String currentPartner;
+        private String lastProduct;
+        private int entries;
+
+        void add(String reporter, String partner, String product, String nomen) {
+            if (!reporter.equals(currentReporter) || !partner.equals(currentPartner)) {
+                currentReporter = reporter;
+                currentPartner = partner;
+                currentProducts = new ArrayList<>();
+                routes.computeIfAbsent(reporter, key -> new LinkedHashMap<>()).put(partner, currentProducts);
+                lastProduct = null;
+            }
+            if (product.equals(lastProduct)) {
+                return;
+            }
+            lastProduct = product;
+            currentProducts.add(sharedEntries.computeIfAbsent(nomen + ":" + product,
+                    key -> new ProductEntry(product, productLabel(nomen, product))));
+            entries++;
+        }
+
+        Map<String, Map<String, List<ProductEntry>>> finish() {
+            return routes;
+        }
+    }
 }
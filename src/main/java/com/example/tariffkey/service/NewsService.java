@@ -1,75 +1,153 @@
 package com.example.tariffkey.service;
 
-import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import org.json.JSONArray;
 import org.json.JSONObject;
-import org.springframework.http.*;
-import org.springframework.web.client.RestTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import java.util.*;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Serves trade news from an immutable snapshot. Requests never call the upstream
+ * API: a scheduled task refreshes the snapshot once it is older than
+ * {@code news.ttl-ms}, with at most one fetch in flight, and the previous articles
+ * keep being served while a refresh runs or after one fails.
+ */
 @Service
 public class NewsService {
-    @Value("${news.api.key:${NEWS_API_KEY:}}")
-    private String newsApiKey;
-    private final RestTemplate restTemplate = new RestTemplate();
-    private String getNewsUrl() {
-        return "https://newsdata.io/api/1/news?apikey=" + newsApiKey + "&q=tariff+trade+import+export&language=en&country=sg";
+
+    private static final Logger log = LoggerFactory.getLogger(NewsService.class);
+    private static final int MAX_ARTICLES = 6;
+
+    private final RestTemplate restTemplate;
+    private final String newsApiKey;
+    private final String baseUrl;
+    private final long ttlMs;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Snapshot snapshot = new Snapshot(List.of(), 0L);
+
+    public NewsService(@Value("${news.api.key:${NEWS_API_KEY:}}") String newsApiKey,
+                       @Value("${news.api.base-url:https://newsdata.io/api/1/news}") String baseUrl,
+                       @Value("${news.ttl-ms:86400000}") long ttlMs,
+                       @Value("${news.api.timeout-ms:10000}") int timeoutMs,
+                       @Value("${news.api.client:simple}") String client) {
+        this.restTemplate = new RestTemplate(requestFactory(client, timeoutMs));
+        this.newsApiKey = newsApiKey;
+        this.baseUrl = baseUrl;
+        this.ttlMs = ttlMs;
+        if (newsApiKey == null || newsApiKey.isBlank()) {
+            log.warn("NEWS_API_KEY is not configured; news will not be fetched.");
+        }
+    }
+
+    // "jdk" uses java.net.http.HttpClient, which parks cleanly on virtual threads;
+    // "simple" keeps HttpURLConnection.
+    private static ClientHttpRequestFactory requestFactory(String client, int timeoutMs) {
+        if ("jdk".equalsIgnoreCase(client)) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .connectTimeout(Duration.ofMillis(timeoutMs))
+                    .build();
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+            requestFactory.setReadTimeout(Duration.ofMillis(timeoutMs));
+            return requestFactory;
+        }
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeoutMs);
+        requestFactory.setReadTimeout(timeoutMs);
+        return requestFactory;
     }
-    private List<Map<String, String>> cachedNews = new ArrayList<>();
-    private long lastFetchTime = 0;
 
     public List<Map<String, String>> getLatestNews() {
-        long now = System.currentTimeMillis();
-        if (now - lastFetchTime < 24 * 60 * 60 * 1000 && !cachedNews.isEmpty()) {
-            return cachedNews;
+        return snapshot.articles();
+    }
+
+    // Runs at startup and then every retry interval; only fetches once the snapshot is stale.
+    @Scheduled(initialDelay = 0, fixedDelayString = "${news.retry-interval-ms:300000}")
+    public void refreshIfStale() {
+        if (System.currentTimeMillis() - snapshot.fetchedAt() >= ttlMs) {
+            refresh();
         }
+    }
 
+    /**
+     * Fetches the latest articles unless a fetch is already running.
+     * Returns false when the call was skipped or failed and the snapshot was kept.
+     */
+    public boolean refresh() {
         if (newsApiKey == null || newsApiKey.isBlank()) {
-            System.out.println("[NewsService] NEWS_API_KEY is not configured; skipping remote fetch.");
-            return cachedNews;
+            return false;
+        }
+        if (!refreshing.compareAndSet(false, true)) {
+            return false;
         }
-
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("User-Agent", "Mozilla/5.0 (TariffKey/1.0)");
-            headers.set("Accept", "application/json");
-            HttpEntity<String> entity = new HttpEntity<>(headers);
+            List<Map<String, String>> articles = fetch();
+            if (articles == null) {
+                return false;
+            }
+            snapshot = new Snapshot(articles, System.currentTimeMillis());
+            log.info("Fetched {} news articles", articles.size());
+            return true;
+        } catch (RuntimeException e) { // RestClientException or malformed JSON
+            log.warn("News fetch failed, keeping {} cached articles: {}", snapshot.articles().size(), e.getMessage());
+            return false;
+        } finally {
+            refreshing.set(false);
+        }
+    }
 
-            ResponseEntity<String> response = restTemplate.exchange(
-                    getNewsUrl(), HttpMethod.GET, entity, String.class);
+    private List<Map<String, String>> fetch() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("User-Agent", "Mozilla/5.0 (TariffKey/1.0)");
+        headers.set("Accept", "application/json");
+        HttpEntity<String> entity = new HttpEntity<>(headers);
 
-            if (!response.getStatusCode().is2xxSuccessful()) {
-                System.out.println("[NewsService] Failed to fetch news: " + response.getStatusCode());
-                return cachedNews;
-            }
+        ResponseEntity<String> response = restTemplate.exchange(
+                getNewsUrl(), HttpMethod.GET, entity, String.class);
 
-            String json = response.getBody();
-            if (json == null) return cachedNews;
-
-            JSONObject obj = new JSONObject(json);
-            JSONArray articles = obj.optJSONArray("results");
-            if (articles == null) return cachedNews;
-
-            List<Map<String, String>> results = new ArrayList<>();
-            for (int i = 0; i < Math.min(6, articles.length()); i++) {
-                JSONObject a = articles.getJSONObject(i);
-                Map<String, String> article = new HashMap<>();
-                article.put("title", a.optString("title", "No title"));
-                article.put("url", a.optString("link", "#"));
-                article.put("source", a.optString("source_id", "NewsData.io"));
-                article.put("date", a.optString("pubDate", ""));
-                results.add(article);
-            }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            log.warn("Failed to fetch news: {}", response.getStatusCode());
+            return null;
+        }
+
+        String json = response.getBody();
+        if (json == null) return null;
+
+        JSONObject obj = new JSONObject(json);
+        JSONArray articles = obj.optJSONArray("results");
+        if (articles == null) return null;
 
-            cachedNews = results;
-            lastFetchTime = now;
-            System.out.println("[NewsService] Successfully fetched " + results.size() + " articles.");
-            return results;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return cachedNews;
+        List<Map<String, String>> results = new ArrayList<>();
+        for (int i = 0; i < Math.min(MAX_ARTICLES, articles.length()); i++) {
+            JSONObject a = articles.getJSONObject(i);
+            results.add(Map.of(
+                    "title", a.optString("title", "No title"),
+                    "url", a.optString("link", "#"),
+                    "source", a.optString("source_id", "NewsData.io"),
+                    "date", a.optString("pubDate", "")));
         }
+        return List.copyOf(results);
     }
+
+    private String getNewsUrl() {
+        return baseUrl + "?apikey=" + newsApiKey + "&q=tariff+trade+import+export&language=en&country=sg";
+    }
+
+    private record Snapshot(List<Map<String, String>> articles, long fetchedAt) {}
 }
@@ -0,0 +1,306 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.LookupOption;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * In-memory product search over HS6 codes and their WITS descriptions, used for
+ * autocomplete. Codes are kept sorted, so all codes with a given prefix form one
+ * contiguous range found by binary search. Description words from every
+ * nomenclature go into a sorted token dictionary with a posting list of product
+ * slots per token, so a word prefix is a range as well. Snapshots are immutable
+ * and rebuilt at startup and whenever {@code wits_product_metadata} changes.
+ *
+ * The snapshot also answers description lookups for the lookup graph, replacing
+ * its per-code metadata queries.
+ */
+@Service
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    static final int MAX_RESULTS = 50;
+
+    private static final String LOAD_SQL = """
+            select nomen_code, product_code, description
+            from wits_product_metadata
+            order by product_code, nomen_code
+            """;
+
+    private static final String FINGERPRINT_SQL = """
+            select count(*), max(updated_at), coalesce(sum(length(description)), 0)
+            from wits_product_metadata
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private volatile Snapshot snapshot;
+
+    public ProductSearchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Version tag of the snapshot being served; changes whenever product metadata does. */
+    public String version() {
+        return snapshot().version();
+    }
+
+    /**
+     * Products matching the query, best first. A query of digits (dots and spaces
+     * allowed, as in {@code 8471.30}) matches HS code prefixes in code order. Any
+     * other query matches products whose code or description has a word starting
+     * with every query term. Exact word matches rank first, then code order.
+     */
+    public List<LookupOption> search(String query, int limit) {
+        if (!StringUtils.hasText(query)) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        int max = Math.max(1, Math.min(limit, MAX_RESULTS));
+        Snapshot current = snapshot();
+        String code = query.replaceAll("[\\s.]", "");
+        if (code.chars().allMatch(Character::isDigit)) {
+            int[] range = prefixRange(current.codes, code);
+            List<LookupOption> results = new ArrayList<>(Math.min(max, range[1] - range[0]));
+            for (int slot = range[0]; slot < range[1] && results.size() < max; slot++) {
+                results.add(current.option(slot));
+            }
+            return results;
+        }
+        return current.searchText(tokenize(query), max);
+    }
+
+    /**
+     * Description for the code under the given nomenclature, falling back to the
+     * HS-level description and then to any nomenclature's.
+     */
+    public Optional<String> description(String nomenCode, String productCode) {
+        Snapshot current = snapshot();
+        String precise = current.descriptions.get(nomenCode + ":" + productCode);
+        return Optional.ofNullable(precise != null ? precise : current.bestDescriptions.get(productCode));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        refreshIfChanged();
+    }
+
+    @Scheduled(fixedDelayString = "${lookups.product-search.refresh-interval-ms:300000}",
+            initialDelayString = "${lookups.product-search.refresh-interval-ms:300000}")
+    public void reloadPeriodically() {
+        try {
+            refreshIfChanged();
+        } catch (DataAccessException ex) {
+            log.warn("Unable to reload product search index: {}", ex.getMessage());
+        }
+    }
+
+    /** Rebuilds the snapshot if the metadata table changed since it was built. */
+    public synchronized boolean refreshIfChanged() {
+        String fingerprint = jdbcTemplate.queryForObject(FINGERPRINT_SQL,
+                (rs, i) -> rs.getLong(1) + ":" + rs.getString(2) + ":" + rs.getLong(3));
+        Snapshot current = snapshot;
+        if (current != null && current.fingerprint.equals(fingerprint)) {
+            return false;
+        }
+        long started = System.nanoTime();
+        SnapshotBuilder builder = new SnapshotBuilder();
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            builder.add(rs.getString(1), rs.getString(2), rs.getString(3));
+        });
+        Snapshot next = builder.build(fingerprint);
+        snapshot = next;
+        log.info("Product search index built: {} products, {} terms in {} ms", next.codes.length,
+                next.tokens.length, (System.nanoTime() - started) / 1_000_000);
+        return true;
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            refreshIfChanged();
+            current = snapshot;
+        }
+        return current;
+    }
+
+    /** Lower-cased words of at least two letters or digits. */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.length() >= 2) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /** Half-open range of entries in the sorted array that start with the prefix. */
+    private static int[] prefixRange(String[] sorted, String prefix) {
+        int from = insertionPoint(sorted, prefix);
+        int to = insertionPoint(sorted, prefix + Character.MAX_VALUE);
+        return new int[]{from, to};
+    }
+
+    private static int insertionPoint(String[] sorted, String key) {
+        int index = Arrays.binarySearch(sorted, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static final class Snapshot {
+
+        private final String version;
+        private final String fingerprint;
+        private final String[] codes;
+        private final String[] labels;
+        private final String[] tokens;
+        private final int[][] postings;
+        private final Map<String, String> descriptions;
+        private final Map<String, String> bestDescriptions;
+
+        private Snapshot(String fingerprint, String[] codes, String[] labels, String[] tokens, int[][] postings,
+                         Map<String, String> descriptions, Map<String, String> bestDescriptions) {
+            this.version = "p" + Integer.toHexString(fingerprint.hashCode());
+            this.fingerprint = fingerprint;
+            this.codes = codes;
+            this.labels = labels;
+            this.tokens = tokens;
+            this.postings = postings;
+            this.descriptions = descriptions;
+            this.bestDescriptions = bestDescriptions;
+        }
+
+        String version() {
+            return version;
+        }
+
+        LookupOption option(int slot) {
+            return new LookupOption(codes[slot], labels[slot], codes[slot], null);
+        }
+
+        List<LookupOption> searchText(List<String> terms, int max) {
+            if (terms.isEmpty()) {
+                return List.of();
+            }
+            BitSet matches = null;
+            int[] exactHits = new int[codes.length];
+            for (String term : terms) {
+                BitSet termMatches = new BitSet(codes.length);
+                int[] range = prefixRange(tokens, term);
+                for (int t = range[0]; t < range[1]; t++) {
+                    for (int slot : postings[t]) {
+                        termMatches.set(slot);
+                    }
+                }
+                int exact = Arrays.binarySearch(tokens, term);
+                if (exact >= 0) {
+                    for (int slot : postings[exact]) {
+                        exactHits[slot]++;
+                    }
+                }
+                int[] codeRange = prefixRange(codes, term);
+                termMatches.set(codeRange[0], codeRange[1]);
+                if (matches == null) {
+                    matches = termMatches;
+                } else {
+                    matches.and(termMatches);
+                }
+                if (matches.isEmpty()) {
+                    return List.of();
+                }
+            }
+            // Bucket by exact-hit count; slots are visited in code order, so each bucket stays sorted.
+            List<List<Integer>> buckets = new ArrayList<>();
+            for (int i = 0; i <= terms.size(); i++) {
+                buckets.add(new ArrayList<>());
+            }
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                buckets.get(Math.min(exactHits[slot], terms.size())).add(slot);
+            }
+            List<LookupOption> results = new ArrayList<>(max);
+            for (int score = terms.size(); score >= 0 && results.size() < max; score--) {
+                for (int slot : buckets.get(score)) {
+                    results.add(option(slot));
+                    if (results.size() == max) {
+                        break;
+                    }
+                }
+            }
+            return results;
+        }
+    }
+
+    private static final class SnapshotBuilder {
+
+        private final Map<String, String> descriptions = new HashMap<>();
+        // product code -> descriptions in nomenclature order, HS-level first
+        private final Map<String, LinkedHashMap<String, String>> byCode = new TreeMap<>();
+
+        void add(String nomenCode, String productCode, String description) {
+            if (productCode == null || !StringUtils.hasText(description)) {
+                return;
+            }
+            String text = description.trim();
+            descriptions.put(nomenCode + ":" + productCode, text);
+            LinkedHashMap<String, String> perNomen = byCode.computeIfAbsent(productCode, key -> new LinkedHashMap<>());
+            if ("HS".equals(nomenCode)) {
+                LinkedHashMap<String, String> reordered = new LinkedHashMap<>();
+                reordered.put(nomenCode, text);
+                reordered.putAll(perNomen);
+                byCode.put(productCode, reordered);
+            } else {
+                perNomen.put(nomenCode, text);
+            }
+        }
+
+        Snapshot build(String fingerprint) {
+            Map<String, String> bestDescriptions = new HashMap<>();
+            byCode.forEach((code, perNomen) -> bestDescriptions.put(code, perNomen.values().iterator().next()));
+
+            // Only HS6 codes are quotable, so only they are searchable.
+            List<String> searchable = byCode.keySet().stream()
+                    .filter(code -> code.length() == 6 && code.chars().allMatch(Character::isDigit))
+                    .toList();
+            String[] codes = searchable.toArray(new String[0]);
+            String[] labels = new String[codes.length];
+            TreeMap<String, List<Integer>> postingLists = new TreeMap<>();
+            for (int slot = 0; slot < codes.length; slot++) {
+                String code = codes[slot];
+                labels[slot] = bestDescriptions.get(code) + " (HS " + code + ")";
+                for (String description : byCode.get(code).values()) {
+                    for (String token : tokenize(description)) {
+                        List<Integer> posting = postingLists.computeIfAbsent(token, key -> new ArrayList<>());
+                        if (posting.isEmpty() || posting.get(posting.size() - 1) != slot) {
+                            posting.add(slot);
+                        }
+                    }
+                }
+            }
+            String[] tokens = postingLists.keySet().toArray(new String[0]);
+            int[][] postings = new int[tokens.length][];
+            int t = 0;
+            for (List<Integer> posting : postingLists.values()) {
+                postings[t++] = posting.stream().mapToInt(Integer::intValue).toArray();
+            }
+            return new Snapshot(fingerprint, codes, labels, tokens, postings,
+                    Map.copyOf(descriptions), Map.copyOf(bestDescriptions));
+        }
+    }
+}
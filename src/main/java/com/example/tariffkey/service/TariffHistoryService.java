@@ -1,22 +1,24 @@
 package com.example.tariffkey.service;
 
+import com.example.tariffkey.model.Tariff;
 import com.example.tariffkey.model.TariffHistoryPoint;
 import com.example.tariffkey.model.TariffHistoryRequest;
 import com.example.tariffkey.model.TariffHistoryResponse;
+import com.example.tariffkey.model.TariffHistorySeries;
 import com.example.tariffkey.model.TariffHistorySummary;
-import com.example.tariffkey.model.WitsTariff;
-import com.example.tariffkey.repository.WitsTariffRepository;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Sort;
+import com.example.tariffkey.repository.TariffRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 import java.util.Optional;
 
 @Service
@@ -26,10 +28,18 @@ public class TariffHistoryService {
     private static final int MIN_LIMIT = 10;
     private static final int MAX_LIMIT = 1000;
 
-    private final WitsTariffRepository witsTariffRepository;
+    private static final int MIN_YEAR = 1900;
+    private static final int MAX_YEAR = 9999;
 
-    public TariffHistoryService(WitsTariffRepository witsTariffRepository) {
-        this.witsTariffRepository = witsTariffRepository;
+    private final TariffHistoryStore historyStore;
+    private final TariffRepository tariffRepository;
+    private final WitsDatasetMonitor datasetMonitor;
+
+    public TariffHistoryService(TariffHistoryStore historyStore, TariffRepository tariffRepository,
+                                WitsDatasetMonitor datasetMonitor) {
+        this.historyStore = historyStore;
+        this.tariffRepository = tariffRepository;
+        this.datasetMonitor = datasetMonitor;
     }
 
     public TariffHistoryResponse getHistory(TariffHistoryRequest request) {
@@ -52,64 +62,199 @@ public class TariffHistoryService {
         String origin = normalizeCode(request.getOriginCountry());
         String dest = normalizeCode(request.getDestCountry());
 
-        Pageable pageable = PageRequest.of(0, limit, Sort.by(Sort.Direction.ASC, "year"));
-        Page<WitsTariff> page = witsTariffRepository.findHistory(product, origin, dest, startYear, endYear, pageable);
-        List<TariffHistoryPoint> points = page.getContent().stream()
-                .map(t -> TariffHistoryPoint.builder()
-                        .productCode(t.getProductCode())
-                        .originCountry(t.getReporterIso())
-                        .destCountry(t.getPartnerCode())
-                        .year(t.getYear())
-                        .validFrom(LocalDate.of(t.getYear(), 1, 1))
-                        .validTo(LocalDate.of(t.getYear(), 12, 31))
-                        .ratePercent(resolveRate(t))
-                        .build())
-                .toList();
+        TariffHistoryStore.Cursor after = StringUtils.hasText(request.getCursor())
+                ? TariffHistoryStore.Cursor.parse(request.getCursor().trim())
+                : null;
+
+        TariffHistoryStore.Series series = historyStore.find(product, origin, dest, startYear, endYear, after, limit);
+        List<TariffHistoryPoint> points = new ArrayList<>(series.size());
+        for (int i = 0; i < series.size(); i++) {
+            int year = series.yearAt(i);
+            points.add(TariffHistoryPoint.builder()
+                    .productCode(series.productAt(i))
+                    .originCountry(series.reporterAt(i))
+                    .destCountry(series.partnerAt(i))
+                    .year(year)
+                    .validFrom(LocalDate.of(year, 1, 1))
+                    .validTo(LocalDate.of(year, 12, 31))
+                    .ratePercent(rate(series.scaledRateAt(i)))
+                    .build());
+        }
 
-        TariffHistorySummary summary = summarize(points);
+        String nextCursor = series.hasMore() && series.size() > 0
+                ? series.cursorAt(series.size() - 1).toString()
+                : null;
         return TariffHistoryResponse.builder()
                 .data(points)
-                .summary(summary)
+                .summary(summarize(series))
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    /**
+     * Validator for {@link #getRouteSeries}, built only from stored state so every
+     * instance and restart agrees: the audit {@code change_seq} the route cache was last
+     * invalidated for, the stamp of the route's admin tariffs, and the current year that
+     * open ranges run up to. Checks the arguments the same way, so a 304 is never sent
+     * for a request that would fail.
+     */
+    public String routeSeriesVersion(String reporter, String partner, String hsCode,
+                                     Integer startYear, Integer endYear) {
+        requireRouteArguments(reporter, partner, hsCode, startYear, endYear);
+        Long datasetVersion = datasetMonitor.currentVersion();
+        TariffRepository.RouteStamp admin = tariffRepository.findRouteStamp(
+                normalizeCode(reporter), normalizeCode(partner), normalizeCode(hsCode));
+        OffsetDateTime lastUpdated = admin.getLastUpdated();
+        long updatedMicros = lastUpdated == null
+                ? 0L
+                : ChronoUnit.MICROS.between(Instant.EPOCH, lastUpdated.toInstant());
+        return "w" + Long.toHexString(datasetVersion != null ? datasetVersion : 0L)
+                + ".a" + Long.toHexString(admin.getRowCount())
+                + "-" + Long.toHexString(admin.getMaxId() != null ? admin.getMaxId() : 0L)
+                + "-" + Long.toHexString(updatedMicros)
+                + "." + LocalDate.now().getYear();
+    }
+
+    /**
+     * Dataset and effective rates for every year of one route, from the cached route
+     * series plus the route's admin tariffs. Those are read from the table rather than
+     * {@link AdminTariffIndex}, which can lag writes made on another instance, so the
+     * body matches {@link #routeSeriesVersion}. Dataset years take the first row of the
+     * year, as the rate summary does; admin tariffs apply as a step function, the
+     * newest one overlapping a year winning. Years without either are null. Open
+     * bounds span the dataset years and admin ranges up to the current year.
+     */
+    public TariffHistorySeries getRouteSeries(String reporter, String partner, String hsCode,
+                                              Integer startYear, Integer endYear) {
+        requireRouteArguments(reporter, partner, hsCode, startYear, endYear);
+        String origin = normalizeCode(reporter);
+        String dest = normalizeCode(partner);
+        String product = normalizeCode(hsCode);
+
+        TariffHistoryStore.Series series = historyStore.find(product, origin, dest,
+                startYear != null ? startYear : MIN_YEAR, endYear != null ? endYear : MAX_YEAR,
+                null, Integer.MAX_VALUE);
+        // Newest validFrom first, so the first range overlapping a year is the one in force.
+        List<Tariff> admin = tariffRepository.findActiveTariffs(origin, dest, product,
+                LocalDate.of(startYear != null ? startYear : MIN_YEAR, 1, 1),
+                LocalDate.of(endYear != null ? endYear : MAX_YEAR, 12, 31));
+
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        if (series.size() > 0) {
+            first = series.yearAt(0);
+            last = series.yearAt(series.size() - 1);
+        }
+        int adminCap = Math.max(last, LocalDate.now().getYear());
+        for (Tariff tariff : admin) {
+            first = Math.min(first, tariff.getValidFrom().getYear());
+            last = Math.max(last, Math.min(tariff.getValidTo().getYear(), adminCap));
+        }
+        if (startYear != null) {
+            first = Math.max(first, startYear);
+        }
+        if (endYear != null) {
+            last = Math.min(last, endYear);
+        }
+
+        List<Integer> years = new ArrayList<>();
+        List<BigDecimal> datasetRates = new ArrayList<>();
+        List<BigDecimal> rates = new ArrayList<>();
+        int row = 0;
+        for (int year = first; year <= last; year++) {
+            // Rows are ordered by (year, id), so the first row of a year is its lowest id.
+            while (row < series.size() && series.yearAt(row) < year) {
+                row++;
+            }
+            BigDecimal datasetRate = row < series.size() && series.yearAt(row) == year
+                    ? rate(series.scaledRateAt(row))
+                    : null;
+            BigDecimal effective = datasetRate;
+            for (Tariff tariff : admin) {
+                if (tariff.getValidFrom().getYear() <= year && tariff.getValidTo().getYear() >= year) {
+                    effective = adminPercent(tariff.getRate());
+                    break;
+                }
+            }
+            years.add(year);
+            datasetRates.add(datasetRate);
+            rates.add(effective);
+        }
+
+        List<TariffHistorySeries.AdminStep> steps = admin.stream()
+                .sorted(Comparator.comparing(Tariff::getValidFrom))
+                .map(tariff -> TariffHistorySeries.AdminStep.builder()
+                        .adminTariffId(tariff.getId())
+                        .validFrom(tariff.getValidFrom())
+                        .validTo(tariff.getValidTo())
+                        .ratePercent(adminPercent(tariff.getRate()))
+                        .label(tariff.getLabel())
+                        .build())
+                .toList();
+
+        return TariffHistorySeries.builder()
+                .reporter(origin)
+                .partner(dest)
+                .hsCode(product)
+                .years(years)
+                .datasetRates(datasetRates)
+                .rates(rates)
+                .adminSteps(steps)
                 .build();
     }
 
-    private TariffHistorySummary summarize(List<TariffHistoryPoint> points) {
-        if (points.isEmpty()) {
+    // Works on the scaled ints; BigDecimals are only created for the output fields.
+    private TariffHistorySummary summarize(TariffHistoryStore.Series series) {
+        int count = series.size();
+        if (count == 0) {
             return TariffHistorySummary.builder()
                     .totalRecords(0)
                     .build();
         }
 
-        List<BigDecimal> rates = points.stream()
-                .map(TariffHistoryPoint::getRatePercent)
-                .filter(Objects::nonNull)
-                .toList();
-
-        BigDecimal min = rates.stream().min(BigDecimal::compareTo).orElse(null);
-        BigDecimal max = rates.stream().max(BigDecimal::compareTo).orElse(null);
-        BigDecimal avg = rates.isEmpty()
-                ? null
-                : rates.stream()
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .divide(BigDecimal.valueOf(rates.size()), 4, RoundingMode.HALF_UP);
-
-        BigDecimal startRate = points.get(0).getRatePercent();
-        BigDecimal endRate = points.get(points.size() - 1).getRatePercent();
-        BigDecimal delta = (startRate != null && endRate != null)
-                ? endRate.subtract(startRate)
-                : null;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        long sum = 0;
+        for (int i = 0; i < count; i++) {
+            int rate = series.scaledRateAt(i);
+            min = Math.min(min, rate);
+            max = Math.max(max, rate);
+            sum += rate;
+        }
+        int startRate = series.scaledRateAt(0);
+        int endRate = series.scaledRateAt(count - 1);
 
         return TariffHistorySummary.builder()
-                .totalRecords(points.size())
-                .averageRate(avg)
-                .minRate(min)
-                .maxRate(max)
-                .startRate(startRate)
-                .endRate(endRate)
-                .deltaRate(delta)
+                .totalRecords(count)
+                .averageRate(BigDecimal.valueOf(sum, TariffHistoryStore.RATE_SCALE)
+                        .divide(BigDecimal.valueOf(count), TariffHistoryStore.RATE_SCALE, RoundingMode.HALF_UP))
+                .minRate(rate(min))
+                .maxRate(rate(max))
+                .startRate(rate(startRate))
+                .endRate(rate(endRate))
+                .deltaRate(rate((long) endRate - startRate))
                 .build();
     }
 
+    private static BigDecimal rate(long scaled) {
+        return BigDecimal.valueOf(scaled, TariffHistoryStore.RATE_SCALE);
+    }
+
+    // Admin rates are stored as fractions; the series reports percent like the dataset.
+    private static BigDecimal adminPercent(double rate) {
+        return BigDecimal.valueOf(rate).movePointRight(2).setScale(TariffHistoryStore.RATE_SCALE, RoundingMode.HALF_UP);
+    }
+
+    private void requireRouteArguments(String reporter, String partner, String hsCode,
+                                       Integer startYear, Integer endYear) {
+        if (normalizeCode(reporter) == null || normalizeCode(partner) == null || normalizeCode(hsCode) == null) {
+            throw new IllegalArgumentException("reporter, partner and hsCode are required");
+        }
+        if (startYear != null && endYear != null && startYear > endYear) {
+            throw new IllegalArgumentException("startYear must not be after endYear");
+        }
+    }
+
     private String normalizeCode(String value) {
         if (value == null) {
             return null;
@@ -117,21 +262,4 @@ public class TariffHistoryService {
         String trimmed = value.trim();
         return trimmed.isEmpty() ? null : trimmed.toUpperCase();
     }
-
-    private BigDecimal resolveRate(WitsTariff tariff) {
-        if (tariff.getSimpleAverage() != null) {
-            return tariff.getSimpleAverage();
-        }
-        if (tariff.getSumOfRates() != null && tariff.getTotalNoOfLines() != null && tariff.getTotalNoOfLines() > 0) {
-            return tariff.getSumOfRates()
-                    .divide(BigDecimal.valueOf(tariff.getTotalNoOfLines()), 4, RoundingMode.HALF_UP);
-        }
-        if (tariff.getMaxRate() != null) {
-            return tariff.getMaxRate();
-        }
-        if (tariff.getMinRate() != null) {
-            return tariff.getMinRate();
-        }
-        return BigDecimal.ZERO;
-    }
 }
@@ -0,0 +1,385 @@
+package com.example.tariffkey.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar source for tariff history. A fully specified route (reporter, partner,
+ * product) is served from a (year, id)-ordered series of {@code int} years and
+ * rates scaled by 10^4, kept in a bounded LRU, so a range is two binary searches
+ * and no entities are built. Partial filters go to one of eight fixed statements,
+ * one per combination of given filters, each backed by a covering index (V10).
+ *
+ * Paging is keyset-based on (year, id): a page fetches one extra row to know
+ * whether there is more, so no count query is ever needed.
+ */
+@Service
+public class TariffHistoryStore {
+
+    private static final Logger log = LoggerFactory.getLogger(TariffHistoryStore.class);
+
+    /** Rates are percentages with four decimals, matching NUMERIC(12,4). */
+    static final int RATE_SCALE = 4;
+
+    private static final String COLUMNS = """
+            reporter_iso, partner_code, product_code, "year",
+            simple_average, sum_of_rates, total_no_of_lines, max_rate, min_rate
+            """;
+
+    private static final String ROUTE_SQL = "select " + COLUMNS + """
+            , id
+            from wits_tariffs
+            where reporter_iso = ? and partner_code = ? and product_code = ?
+            order by "year", id
+            """;
+
+    private static final int PRODUCT = 1;
+    private static final int ORIGIN = 2;
+    private static final int DEST = 4;
+    // Indexed by the PRODUCT | ORIGIN | DEST mask of the filters that were given.
+    private static final String[] SHAPED_SQL = new String[8];
+
+    static {
+        for (int mask = 0; mask < SHAPED_SQL.length; mask++) {
+            StringBuilder sql = new StringBuilder("select ").append(COLUMNS).append(", id from wits_tariffs where ");
+            if ((mask & PRODUCT) != 0) {
+                sql.append("product_code = ? and ");
+            }
+            if ((mask & ORIGIN) != 0) {
+                sql.append("reporter_iso = ? and ");
+            }
+            if ((mask & DEST) != 0) {
+                sql.append("partner_code = ? and ");
+            }
+            sql.append("(\"year\", id) > (?, ?) and \"year\" <= ? order by \"year\", id limit ?");
+            SHAPED_SQL[mask] = sql.toString();
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, Series> routes;
+    // Bumped under the routes lock on every invalidation; a load that spans one is not cached.
+    private long generation;
+    private final Counter routeHits;
+    private final Counter routeMisses;
+    private final DistributionSummary routeRowsScanned;
+    private final DistributionSummary filteredRowsScanned;
+
+    public TariffHistoryStore(JdbcTemplate jdbcTemplate,
+                              MeterRegistry meterRegistry,
+                              @Value("${history.route-cache.max-routes:5000}") int maxRoutes) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.routeHits = routeCacheCounter(meterRegistry, "hit");
+        this.routeMisses = routeCacheCounter(meterRegistry, "miss");
+        this.routeRowsScanned = rowsScanned(meterRegistry, "route");
+        this.filteredRowsScanned = rowsScanned(meterRegistry, "filtered");
+        this.routes = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Series> eldest) {
+                return size() > maxRoutes;
+            }
+        };
+    }
+
+    private static Counter routeCacheCounter(MeterRegistry registry, String result) {
+        return Counter.builder("tariffkey.history.route.cache")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static DistributionSummary rowsScanned(MeterRegistry registry, String source) {
+        return DistributionSummary.builder("tariffkey.history.rows.scanned")
+                .description("wits_tariffs rows read from the database per history load")
+                .baseUnit("rows")
+                .tag("source", source)
+                .register(registry);
+    }
+
+    /**
+     * Up to {@code limit} rows between the two years (inclusive) ordered by (year, id),
+     * starting after {@code after} when given. Null codes mean "any".
+     */
+    public Series find(String product, String origin, String dest, int startYear, int endYear,
+                       Cursor after, int limit) {
+        Cursor from = after != null ? after : new Cursor(startYear, Long.MIN_VALUE);
+        if (product != null && origin != null && dest != null) {
+            return route(origin, dest, product).range(from, endYear, limit);
+        }
+        return query(product, origin, dest, from, endYear, limit);
+    }
+
+    @EventListener
+    public void onDatasetChanged(WitsDatasetChangedEvent event) {
+        synchronized (routes) {
+            generation++;
+            if (event.isFullReload()) {
+                routes.clear();
+            } else {
+                routes.values().removeIf(series -> event.changedReporters().contains(series.reporter));
+            }
+        }
+    }
+
+    private Series route(String origin, String dest, String product) {
+        String key = origin + "|" + dest + "|" + product;
+        Series cached;
+        long loadedGeneration;
+        synchronized (routes) {
+            cached = routes.get(key);
+            loadedGeneration = generation;
+        }
+        if (cached != null) {
+            routeHits.increment();
+            return cached;
+        }
+        routeMisses.increment();
+        SeriesBuilder builder = new SeriesBuilder();
+        jdbcTemplate.query(ROUTE_SQL, rs -> {
+            builder.add(rs);
+        }, origin, dest, product);
+        routeRowsScanned.record(builder.size);
+        Series loaded = builder.build(origin, dest, product);
+        synchronized (routes) {
+            // The rows may predate a change that was invalidated while they were read.
+            if (generation == loadedGeneration) {
+                routes.put(key, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    private Series query(String product, String origin, String dest, Cursor from, int endYear, int limit) {
+        int mask = 0;
+        List<Object> args = new ArrayList<>(7);
+        if (product != null) {
+            mask |= PRODUCT;
+            args.add(product);
+        }
+        if (origin != null) {
+            mask |= ORIGIN;
+            args.add(origin);
+        }
+        if (dest != null) {
+            mask |= DEST;
+            args.add(dest);
+        }
+        args.add(from.year());
+        args.add(from.id());
+        args.add(endYear);
+        args.add(limit + 1);
+
+        SeriesBuilder builder = new SeriesBuilder();
+        long started = System.nanoTime();
+        jdbcTemplate.query(SHAPED_SQL[mask], rs -> {
+            builder.add(rs);
+        }, args.toArray());
+        filteredRowsScanned.record(builder.size);
+        log.debug("History query ({}, {}, {}) returned {} rows in {} ms", product, origin, dest,
+                builder.size, (System.nanoTime() - started) / 1_000_000);
+        return builder.build(null, null, null).range(from, endYear, limit);
+    }
+
+    /** Keyset position in the (year, id) ordering; rendered as {@code year:id} for clients. */
+    public record Cursor(int year, long id) {
+
+        public static Cursor parse(String value) {
+            int separator = value.indexOf(':');
+            try {
+                if (separator > 0) {
+                    return new Cursor(Integer.parseInt(value.substring(0, separator)),
+                            Long.parseLong(value.substring(separator + 1)));
+                }
+            } catch (NumberFormatException ignored) {
+                // reported below
+            }
+            throw new IllegalArgumentException("Invalid history cursor: " + value);
+        }
+
+        @Override
+        public String toString() {
+            return year + ":" + id;
+        }
+    }
+
+    /**
+     * Read-only slice of history rows. Route codes are held once when the slice
+     * comes from a single route, and per row otherwise.
+     */
+    public static final class Series {
+
+        private final String reporter;
+        private final String partner;
+        private final String product;
+        private final String[] reporters;
+        private final String[] partners;
+        private final String[] products;
+        private final int[] years;
+        private final long[] ids;
+        private final int[] rates;
+        private final int offset;
+        private final int size;
+        private final boolean hasMore;
+
+        private Series(String reporter, String partner, String product,
+                       String[] reporters, String[] partners, String[] products,
+                       int[] years, long[] ids, int[] rates, int offset, int size, boolean hasMore) {
+            this.reporter = reporter;
+            this.partner = partner;
+            this.product = product;
+            this.reporters = reporters;
+            this.partners = partners;
+            this.products = products;
+            this.years = years;
+            this.ids = ids;
+            this.rates = rates;
+            this.offset = offset;
+            this.size = size;
+            this.hasMore = hasMore;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Whether rows exist past this slice within the requested range. */
+        public boolean hasMore() {
+            return hasMore;
+        }
+
+        public int yearAt(int i) {
+            return years[offset + i];
+        }
+
+        public Cursor cursorAt(int i) {
+            return new Cursor(years[offset + i], ids[offset + i]);
+        }
+
+        /** Rate as a percentage scaled by 10^{@value RATE_SCALE}. */
+        public int scaledRateAt(int i) {
+            return rates[offset + i];
+        }
+
+        public String reporterAt(int i) {
+            return reporters == null ? reporter : reporters[offset + i];
+        }
+
+        public String partnerAt(int i) {
+            return partners == null ? partner : partners[offset + i];
+        }
+
+        public String productAt(int i) {
+            return products == null ? product : products[offset + i];
+        }
+
+        Series range(Cursor after, int endYear, int limit) {
+            int from = firstAfter(after.year(), after.id());
+            int to = firstAfter(endYear, Long.MAX_VALUE);
+            int available = Math.max(0, to - from);
+            return new Series(reporter, partner, product, reporters, partners, products,
+                    years, ids, rates, offset + from, Math.min(available, limit), available > limit);
+        }
+
+        // First position whose (year, id) is greater than the given key.
+        private int firstAfter(int year, long id) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int midYear = years[offset + mid];
+                if (midYear < year || (midYear == year && ids[offset + mid] <= id)) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private static final class SeriesBuilder {
+
+        private String[] reporters = new String[16];
+        private String[] partners = new String[16];
+        private String[] products = new String[16];
+        private int[] years = new int[16];
+        private long[] ids = new long[16];
+        private int[] rates = new int[16];
+        private int size;
+
+        void add(ResultSet rs) throws SQLException {
+            if (size == years.length) {
+                int capacity = size * 2;
+                reporters = Arrays.copyOf(reporters, capacity);
+                partners = Arrays.copyOf(partners, capacity);
+                products = Arrays.copyOf(products, capacity);
+                years = Arrays.copyOf(years, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                rates = Arrays.copyOf(rates, capacity);
+            }
+            reporters[size] = rs.getString(1);
+            partners[size] = rs.getString(2);
+            products[size] = rs.getString(3);
+            years[size] = rs.getInt(4);
+            rates[size] = scaledRate(rs.getBigDecimal(5), rs.getBigDecimal(6), (Integer) rs.getObject(7),
+                    rs.getBigDecimal(8), rs.getBigDecimal(9));
+            ids[size] = rs.getLong(10);
+            size++;
+        }
+
+        // A single route does not need per-row codes.
+        Series build(String reporter, String partner, String product) {
+            int[] trimmedYears = Arrays.copyOf(years, size);
+            long[] trimmedIds = Arrays.copyOf(ids, size);
+            int[] trimmedRates = Arrays.copyOf(rates, size);
+            if (reporter != null) {
+                return new Series(reporter, partner, product, null, null, null,
+                        trimmedYears, trimmedIds, trimmedRates, 0, size, false);
+            }
+            return new Series(null, null, null, Arrays.copyOf(reporters, size), Arrays.copyOf(partners, size),
+                    Arrays.copyOf(products, size), trimmedYears, trimmedIds, trimmedRates, 0, size, false);
+        }
+
+        // Same precedence as the entity-based history: simple average, then
+        // sum / lines, then max, then min, else zero.
+        private static int scaledRate(BigDecimal simpleAverage, BigDecimal sumOfRates, Integer lines,
+                                      BigDecimal maxRate, BigDecimal minRate) {
+            BigDecimal rate;
+            if (simpleAverage != null) {
+                rate = simpleAverage;
+            } else if (sumOfRates != null && lines != null && lines > 0) {
+                rate = sumOfRates.divide(BigDecimal.valueOf(lines), RATE_SCALE, RoundingMode.HALF_UP);
+            } else if (maxRate != null) {
+                rate = maxRate;
+            } else if (minRate != null) {
+                rate = minRate;
+            } else {
+                return 0;
+            }
+            // NUMERIC(12,4) allows rates an int at scale 4 cannot hold (about 214,748%);
+            // saturate like WitsRateIndex does instead of failing the whole history request.
+            BigInteger scaled = rate.setScale(RATE_SCALE, RoundingMode.HALF_UP).unscaledValue();
+            if (scaled.bitLength() > 31) {
+                return scaled.signum() > 0 ? Integer.MAX_VALUE : Integer.MIN_VALUE;
+            }
+            return scaled.intValue();
+        }
+    }
+}
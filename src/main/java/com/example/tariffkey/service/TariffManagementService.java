@@ -5,30 +5,45 @@ import com.example.tariffkey.model.Tariff;
 import com.example.tariffkey.repository.TariffRepository;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Admin tariff writes. Each write takes the route's advisory lock before its overlap
+ * check, so writers of one route run one at a time even when the route has no rows yet.
+ * Overlap checks and range closing work on rows read from the table inside the
+ * transaction, never on the index's copies, and the {@link AdminTariffIndex} is only
+ * updated once the transaction has committed.
+ */
 @Service
 public class TariffManagementService {
 
     private final TariffRepository tariffRepository;
+    private final AdminTariffIndex adminTariffIndex;
 
-    public TariffManagementService(TariffRepository tariffRepository) {
+    public TariffManagementService(TariffRepository tariffRepository, AdminTariffIndex adminTariffIndex) {
         this.tariffRepository = tariffRepository;
+        this.adminTariffIndex = adminTariffIndex;
     }
 
     public List<Tariff> getAllTariffs() {
         return tariffRepository.findAll(Sort.by(Sort.Direction.DESC, "validFrom", "id"));
     }
 
+    @Transactional
     public Tariff addTariff(AdminTariffRequest request, String createdBy) {
         validateRequest(request);
         LocalDate validFrom = request.getValidFrom();
         LocalDate validTo = request.getValidTo();
 
-        List<Tariff> overlapping = tariffRepository.findActiveTariffs(
+        tariffRepository.lockRoute(request.getOriginCountry(), request.getDestinationCountry(), request.getProduct());
+        List<Tariff> overlapping = tariffRepository.lockOverlappingTariffs(
                 request.getOriginCountry(),
                 request.getDestinationCountry(),
                 request.getProduct(),
@@ -36,19 +51,21 @@ public class TariffManagementService {
                 validTo
         );
 
-        if (!overlapping.isEmpty()) {
-            if (!request.isAllowOverride()) {
-                throw new IllegalArgumentException("Overlapping validity range for this route/HS code. " +
-                        "Adjust the dates or enable override to close the existing range.");
-            }
-            LocalDate cutoff = validFrom.minusDays(1);
-            for (Tariff existing : overlapping) {
-                if (cutoff.isBefore(existing.getValidFrom())) {
-                    tariffRepository.delete(existing);
-                } else {
-                    existing.setValidTo(cutoff);
-                    tariffRepository.save(existing);
-                }
+        if (!overlapping.isEmpty() && !request.isAllowOverride()) {
+            throw new IllegalArgumentException("Overlapping validity range for this route/HS code. " +
+                    "Adjust the dates or enable override to close the existing range.");
+        }
+
+        List<Tariff> removed = new ArrayList<>();
+        List<Tariff> saved = new ArrayList<>();
+        LocalDate cutoff = validFrom.minusDays(1);
+        for (Tariff existing : overlapping) {
+            if (cutoff.isBefore(existing.getValidFrom())) {
+                tariffRepository.delete(existing);
+                removed.add(existing);
+            } else {
+                existing.setValidTo(cutoff);
+                saved.add(tariffRepository.save(existing));
             }
         }
 
@@ -64,14 +81,35 @@ public class TariffManagementService {
                 .createdBy(createdBy)
                 .build();
 
-        return tariffRepository.save(tariff);
+        Tariff created = tariffRepository.save(tariff);
+        saved.add(created);
+        afterCommit(() -> {
+            removed.forEach(adminTariffIndex::remove);
+            saved.forEach(adminTariffIndex::put);
+        });
+        return created;
     }
 
+    @Transactional
     public void deleteTariff(long id) {
-        if (!tariffRepository.existsById(id)) {
-            throw new IllegalArgumentException("Tariff not found: " + id);
+        Tariff existing = tariffRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Tariff not found: " + id));
+        tariffRepository.delete(existing);
+        afterCommit(() -> adminTariffIndex.remove(existing));
+    }
+
+    // A rolled-back write leaves the index untouched.
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
         }
-        tariffRepository.deleteById(id);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 
     private void validateRequest(AdminTariffRequest request) {
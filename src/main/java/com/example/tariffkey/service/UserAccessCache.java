@@ -0,0 +1,112 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Current role of every user, kept in memory so bearer tokens can be authorised
+ * without a {@code users} query per request. The snapshot is reloaded periodically,
+ * users registered since the last reload are looked up once on first use, and
+ * {@link #revoke} rejects a user's outstanding tokens immediately.
+ * Revocations are held per instance and are not shared between replicas.
+ */
+@Service
+public class UserAccessCache {
+
+    private static final Logger log = LoggerFactory.getLogger(UserAccessCache.class);
+
+    // Marks a username that was looked up and does not exist.
+    private static final String NO_USER = "";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long tokenLifetimeMs;
+    private final Map<String, String> lateArrivals = new ConcurrentHashMap<>();
+    private final Map<String, Instant> revokedBefore = new ConcurrentHashMap<>();
+    private volatile Map<String, String> roles;
+
+    public UserAccessCache(JdbcTemplate jdbcTemplate, UserRepository userRepository,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${jwt.expiration}") long tokenLifetimeMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
+        this.tokenLifetimeMs = tokenLifetimeMs;
+    }
+
+    /**
+     * Role the user holds now, or empty when the user no longer exists or their
+     * tokens issued at {@code issuedAt} have been revoked.
+     */
+    public Optional<String> currentRole(String username, Instant issuedAt) {
+        Instant cutoff = revokedBefore.get(username);
+        if (cutoff != null && (issuedAt == null || issuedAt.isBefore(cutoff))) {
+            return Optional.empty();
+        }
+        Map<String, String> current = roles;
+        if (current == null) {
+            current = refresh();
+        }
+        String role = current.get(username);
+        if (role == null) {
+            role = lateArrivals.computeIfAbsent(username, key -> userRepository.findByUsername(key)
+                    .map(user -> user.getRole())
+                    .orElse(NO_USER));
+        }
+        return role.isEmpty() ? Optional.empty() : Optional.of(role);
+    }
+
+    /** Rejects every token issued to the user up to now. */
+    public void revoke(String username) {
+        revokedBefore.put(username, Instant.now());
+        eventPublisher.publishEvent(new UserAccessRevokedEvent(username));
+        log.info("Revoked outstanding tokens for {}", username);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        refresh();
+    }
+
+    @Scheduled(fixedDelayString = "${security.user-cache.refresh-interval-ms:60000}",
+            initialDelayString = "${security.user-cache.refresh-interval-ms:60000}")
+    public void reloadPeriodically() {
+        // Once every token a revocation could cover has expired, it can be forgotten.
+        Instant expired = Instant.now().minusMillis(tokenLifetimeMs);
+        revokedBefore.values().removeIf(cutoff -> cutoff.isBefore(expired));
+        try {
+            refresh();
+        } catch (DataAccessException ex) {
+            log.warn("Unable to reload user roles: {}", ex.getMessage());
+        }
+    }
+
+    public synchronized Map<String, String> refresh() {
+        Map<String, String> loaded = new HashMap<>();
+        jdbcTemplate.query("select username, role from users", rs -> {
+            String role = rs.getString(2);
+            if (role != null) {
+                loaded.put(rs.getString(1), role);
+            }
+        });
+        roles = Map.copyOf(loaded);
+        lateArrivals.clear();
+        return roles;
+    }
+}
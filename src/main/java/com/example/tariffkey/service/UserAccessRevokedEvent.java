@@ -0,0 +1,7 @@
+package com.example.tariffkey.service;
+
+/**
+ * Published when a user's outstanding tokens are revoked, so anything holding
+ * already-verified tokens for that user drops them.
+ */
+public record UserAccessRevokedEvent(String username) {}
@@ -0,0 +1,139 @@
+package com.example.tariffkey.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers tokens that already passed signature and expiry checks, so a client
+ * re-sending the same bearer token skips the HMAC and claim parsing. Entries are
+ * keyed by a SHA-256 digest of the token, never the token itself, and are dropped
+ * once the token expires or its user is revoked.
+ *
+ * The cache is split into stripes, each a small access-ordered LRU, so concurrent
+ * requests rarely wait on the same lock.
+ */
+@Service
+public class VerifiedTokenCache {
+
+    private static final int STRIPES = 16;
+
+    private final JwtService jwtService;
+    private final Map<Digest, JwtService.VerifiedToken>[] stripes;
+    private final boolean enabled;
+    private final Counter hits;
+    private final Counter misses;
+
+    @SuppressWarnings("unchecked")
+    public VerifiedTokenCache(JwtService jwtService,
+                              MeterRegistry meterRegistry,
+                              @Value("${security.jwt.token-cache.max-entries:10000}") int maxEntries) {
+        this.jwtService = jwtService;
+        this.enabled = maxEntries > 0;
+        int perStripe = Math.max(1, maxEntries / STRIPES);
+        this.stripes = new Map[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Digest, JwtService.VerifiedToken> eldest) {
+                    return size() > perStripe;
+                }
+            };
+        }
+        this.hits = counter(meterRegistry, "hit");
+        this.misses = counter(meterRegistry, "miss");
+        Gauge.builder("tariffkey.auth.token.cache.size", this, VerifiedTokenCache::size)
+                .register(meterRegistry);
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("tariffkey.auth.token.cache")
+                .description("Verified bearer token cache lookups")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Same contract as {@link JwtService#verify}: returns the verified claims or
+     * throws {@link io.jsonwebtoken.JwtException} for an invalid or expired token.
+     */
+    public JwtService.VerifiedToken verify(String token) {
+        if (!enabled) {
+            return jwtService.verify(token);
+        }
+        Digest digest = Digest.of(token);
+        Map<Digest, JwtService.VerifiedToken> stripe = stripeFor(digest);
+        JwtService.VerifiedToken cached;
+        synchronized (stripe) {
+            cached = stripe.get(digest);
+            if (cached != null && isExpired(cached)) {
+                stripe.remove(digest);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+        JwtService.VerifiedToken verified = jwtService.verify(token);
+        if (verified.expiresAt() != null) {
+            synchronized (stripe) {
+                stripe.put(digest, verified);
+            }
+        }
+        return verified;
+    }
+
+    @EventListener
+    public void onUserAccessRevoked(UserAccessRevokedEvent event) {
+        for (Map<Digest, JwtService.VerifiedToken> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.values().removeIf(token -> event.username().equals(token.subject()));
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Map<Digest, JwtService.VerifiedToken> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Map<Digest, JwtService.VerifiedToken> stripeFor(Digest digest) {
+        return stripes[(int) (digest.high() >>> 60)];
+    }
+
+    private static boolean isExpired(JwtService.VerifiedToken token) {
+        return !Instant.now().isBefore(token.expiresAt());
+    }
+
+    // First 128 bits of SHA-256(token); collisions are not a practical concern.
+    private record Digest(long high, long low) {
+
+        static Digest of(String token) {
+            try {
+                byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+                ByteBuffer buffer = ByteBuffer.wrap(hash);
+                return new Digest(buffer.getLong(), buffer.getLong());
+            } catch (NoSuchAlgorithmException ex) {
+                throw new IllegalStateException("SHA-256 is not available", ex);
+            }
+        }
+    }
+}
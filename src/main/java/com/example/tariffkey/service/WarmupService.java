@@ -0,0 +1,208 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.LookupOption;
+import com.example.tariffkey.model.TariffRequest;
+import com.example.tariffkey.util.IsoCountryLookup;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Warms a fresh instance up before it takes traffic. Boot reports
+ * ACCEPTING_TRAFFIC once every ApplicationReadyEvent listener, and with them every
+ * snapshot loader, has run. This flips readiness back to REFUSING_TRAFFIC, then
+ * runs synthetic quotes over routes sampled from the lookup graph and synthetic
+ * lookup requests through the local HTTP server, so the hot paths are JIT-compiled
+ * and Hibernate's query plans are cached. Readiness is restored when it finishes,
+ * fails or runs out of time.
+ */
+@Service
+public class WarmupService {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupService.class);
+    private static final int HTTP_ROUTES_PER_ROUND = 5;
+
+    private final LookupService lookupService;
+    private final ProductSearchIndex productSearchIndex;
+    private final DefaultQuoteService quoteService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Environment environment;
+    private final boolean enabled;
+    private final int routeCount;
+    private final int rounds;
+    private final long maxDurationMs;
+    private final Timer warmupTimer;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile double steadyStateMs = Double.NaN;
+
+    public WarmupService(LookupService lookupService,
+                         ProductSearchIndex productSearchIndex,
+                         DefaultQuoteService quoteService,
+                         ApplicationEventPublisher eventPublisher,
+                         Environment environment,
+                         MeterRegistry meterRegistry,
+                         @Value("${warmup.enabled:true}") boolean enabled,
+                         @Value("${warmup.routes:100}") int routeCount,
+                         @Value("${warmup.rounds:20}") int rounds,
+                         @Value("${warmup.max-duration-ms:60000}") long maxDurationMs) {
+        this.lookupService = lookupService;
+        this.productSearchIndex = productSearchIndex;
+        this.quoteService = quoteService;
+        this.eventPublisher = eventPublisher;
+        this.environment = environment;
+        this.enabled = enabled;
+        this.routeCount = routeCount;
+        this.rounds = rounds;
+        this.maxDurationMs = maxDurationMs;
+        this.warmupTimer = Timer.builder("tariffkey.warmup")
+                .description("Time spent warming up before reporting ready")
+                .register(meterRegistry);
+        TimeGauge.builder("tariffkey.startup.steady_state", this, TimeUnit.MILLISECONDS, w -> w.steadyStateMs)
+                .description("Time from JVM start until warm-up finished")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onReadinessChanged(AvailabilityChangeEvent<ReadinessState> event) {
+        if (!enabled || event.getState() != ReadinessState.ACCEPTING_TRAFFIC || !started.compareAndSet(false, true)) {
+            return;
+        }
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        try {
+            warmUp();
+        } catch (RuntimeException ex) {
+            log.warn("Warm-up failed, reporting ready anyway: {}", ex.getMessage());
+        } finally {
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.ACCEPTING_TRAFFIC);
+        }
+    }
+
+    /** Runs the warm-up rounds and records how long it took. */
+    public Result warmUp() {
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(maxDurationMs);
+        IsoCountryLookup.displayNameForIso3("USA");
+        productSearchIndex.version();
+        List<Route> routes = sampleRoutes();
+
+        Integer port = environment.getProperty("local.server.port", Integer.class);
+        HttpClient client = port == null ? null : HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        int quotes = 0;
+        int requests = 0;
+        int round = 0;
+        for (; round < rounds && System.nanoTime() < deadline && !Thread.currentThread().isInterrupted(); round++) {
+            for (Route route : routes) {
+                quote(route);
+                quotes++;
+            }
+            if (client != null) {
+                requests += requestLookups(client, port, routes, round);
+            }
+        }
+
+        long elapsedNanos = System.nanoTime() - started;
+        warmupTimer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        steadyStateMs = ManagementFactory.getRuntimeMXBean().getUptime();
+        log.info("Warm-up finished in {} ms: {} rounds, {} quotes over {} routes, {} lookup requests; "
+                        + "steady state {} ms after JVM start", elapsedNanos / 1_000_000, round, quotes,
+                routes.size(), requests, (long) steadyStateMs);
+        return new Result(routes.size(), quotes, requests, elapsedNanos / 1_000_000);
+    }
+
+    // Round-robin over reporters so every reporter's node and a few partners are touched.
+    private List<Route> sampleRoutes() {
+        List<LookupOption> reporters = lookupService.getReporters().reporters();
+        List<Route> routes = new ArrayList<>();
+        for (int partnerIndex = 0; partnerIndex < 3 && routes.size() < routeCount; partnerIndex++) {
+            for (LookupOption reporter : reporters) {
+                if (routes.size() >= routeCount) {
+                    break;
+                }
+                try {
+                    List<LookupOption> partners = lookupService.getPartnersForReporter(reporter.code());
+                    if (partnerIndex >= partners.size()) {
+                        continue;
+                    }
+                    String partner = partners.get(partnerIndex).code();
+                    LookupOption product = lookupService.getProductsForRoute(reporter.code(), partner).get(0);
+                    routes.add(new Route(reporter.code(), partner, product.hsCode()));
+                } catch (IllegalArgumentException ex) {
+                    // Reporter without partners or products; nothing to warm.
+                }
+            }
+        }
+        return routes;
+    }
+
+    private void quote(Route route) {
+        TariffRequest request = new TariffRequest();
+        request.setFromCountry(route.reporter());
+        request.setToCountry(route.partner());
+        request.setProduct(route.hsCode());
+        request.setHsCode(route.hsCode());
+        request.setQuantity(1);
+        try {
+            quoteService.calculateQuote(request);
+        } catch (RuntimeException ex) {
+            // Missing rates or prices are normal answers; only the code path matters here.
+        }
+    }
+
+    private int requestLookups(HttpClient client, int port, List<Route> routes, int round) {
+        List<String> paths = new ArrayList<>();
+        paths.add("/api/lookups");
+        for (int i = 0; i < Math.min(HTTP_ROUTES_PER_ROUND, routes.size()); i++) {
+            Route route = routes.get((round * HTTP_ROUTES_PER_ROUND + i) % routes.size());
+            String reporterPath = "/api/lookups/reporters/" + route.reporter() + "/partners";
+            paths.add(reporterPath);
+            paths.add(reporterPath + "/" + route.partner() + "/products");
+            paths.add("/api/lookups/products/search?q="
+                    + route.hsCode().substring(0, Math.min(4, route.hsCode().length())));
+        }
+        int sent = 0;
+        for (String path : paths) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                    .timeout(Duration.ofSeconds(5))
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            try {
+                client.send(request, HttpResponse.BodyHandlers.discarding());
+                sent++;
+            } catch (IOException ex) {
+                log.debug("Warm-up request {} failed: {}", path, ex.getMessage());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return sent;
+            }
+        }
+        return sent;
+    }
+
+    private record Route(String reporter, String partner, String hsCode) {}
+
+    public record Result(int routes, int quotes, int lookupRequests, long durationMs) {}
+}
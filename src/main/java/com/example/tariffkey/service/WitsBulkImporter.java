@@ -0,0 +1,736 @@
+package com.example.tariffkey.service;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Java replacement for the archive loop in {@code scripts/import_wits_bulk.py}.
+ * Enabled with the {@code wits-import} profile; it imports every pending archive
+ * and then shuts the application down:
+ *
+ * <pre>
+ * ./mvnw spring-boot:run -Dspring-boot.run.profiles=dev,wits-import \
+ *     -Dspring-boot.run.arguments=--wits.import.input-dir=2983760_49725EA1-0/AVEPref
+ * </pre>
+ *
+ * Each archive is streamed through {@link WitsCsvCopyEncoder} into a temporary
+ * staging table with {@code COPY}, diffed against {@code wits_tariffs}, folded
+ * into {@code wits_rate_summary} for the keys that changed and recorded in
+ * {@code wits_import_audit}, all in one transaction. The audit keeps
+ * the archive's SHA-256, so reruns skip files whose content has not changed, and
+ * a changed file only writes the rows that differ. The running app picks up the
+ * audit's changed-row count and reporters through {@link WitsDatasetMonitor}.
+ * Metadata and lookup CSVs are still handled by the script ({@code --lookup-only}).
+ *
+ * {@code wits_tariffs} is partitioned by reporter (V12), so an archive only writes
+ * to its reporter's partition. {@code --wits.import.reload-reporters=840,36}
+ * rebuilds those reporters from scratch instead: see {@link #reloadReporter}.
+ */
+@Component
+@Profile("wits-import")
+public class WitsBulkImporter implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WitsBulkImporter.class);
+
+    private static final String CREATE_STAGE_SQL = """
+            create temp table wits_tariffs_stage (
+                line_no           bigserial,
+                nomen_code        varchar(10),
+                reporter_iso      varchar(10),
+                partner_code      varchar(10),
+                product_code      varchar(20),
+                "year"            integer,
+                sum_of_rates      numeric(12,4),
+                min_rate          numeric(12,4),
+                max_rate          numeric(12,4),
+                simple_average    numeric(12,4),
+                total_no_of_lines integer,
+                nbr_pref_lines    integer,
+                nbr_mfn_lines     integer,
+                nbr_na_lines      integer,
+                est_code          varchar(10),
+                source_file       varchar(255)
+            ) on commit drop
+            """;
+
+    // Runs before any of the archive's rows are written; see V12__partition_wits_tariffs.sql.
+    private static final String ENSURE_PARTITIONS_SQL = """
+            select wits_tariffs_ensure_partition(reporter_iso)
+            from (select distinct reporter_iso from wits_tariffs_stage) reporters
+            """;
+
+    // Keys whose wits_tariffs rows were written or deleted by this archive; the
+    // rate summary is refreshed for exactly these.
+    private static final String CREATE_CHANGED_KEYS_SQL = """
+            create temp table wits_rate_keys (
+                reporter_iso  varchar(10),
+                partner_code  varchar(10),
+                product_code  varchar(20),
+                "year"        integer
+            ) on commit drop
+            """;
+
+    // DISTINCT ON keeps the last line per key, which is what the row-by-row upsert
+    // ended up storing; ON CONFLICT cannot touch the same row twice in one statement.
+    private static final String MERGE_SQL = """
+            with changed as (
+            insert into wits_tariffs (%1$s)
+            select %1$s from (
+                select distinct on (nomen_code, reporter_iso, partner_code, product_code, "year", est_code) *
+                from wits_tariffs_stage
+                order by nomen_code, reporter_iso, partner_code, product_code, "year", est_code, line_no desc
+            ) latest
+            on conflict (nomen_code, reporter_iso, partner_code, product_code, "year", est_code)
+            do update set
+                sum_of_rates = excluded.sum_of_rates,
+                min_rate = excluded.min_rate,
+                max_rate = excluded.max_rate,
+                simple_average = excluded.simple_average,
+                total_no_of_lines = excluded.total_no_of_lines,
+                nbr_pref_lines = excluded.nbr_pref_lines,
+                nbr_mfn_lines = excluded.nbr_mfn_lines,
+                nbr_na_lines = excluded.nbr_na_lines,
+                source_file = excluded.source_file
+            where (wits_tariffs.sum_of_rates, wits_tariffs.min_rate, wits_tariffs.max_rate,
+                   wits_tariffs.simple_average, wits_tariffs.total_no_of_lines, wits_tariffs.nbr_pref_lines,
+                   wits_tariffs.nbr_mfn_lines, wits_tariffs.nbr_na_lines, wits_tariffs.source_file)
+                is distinct from
+                  (excluded.sum_of_rates, excluded.min_rate, excluded.max_rate,
+                   excluded.simple_average, excluded.total_no_of_lines, excluded.nbr_pref_lines,
+                   excluded.nbr_mfn_lines, excluded.nbr_na_lines, excluded.source_file)
+            returning reporter_iso, partner_code, product_code, "year"
+            )
+            insert into wits_rate_keys select * from changed
+            """.formatted(WitsCsvCopyEncoder.TARGET_COLUMNS);
+
+    // Rows a previous version of the archive brought in that the new version dropped.
+    // %s limits the delete to the archive's reporter partitions when the stage names them.
+    private static final String DELETE_VANISHED_SQL = """
+            with vanished as (
+            delete from wits_tariffs t
+            where t.source_file = ?
+              %s
+              and not exists (
+                  select 1 from wits_tariffs_stage s
+                  where s.nomen_code = t.nomen_code
+                    and s.reporter_iso = t.reporter_iso
+                    and s.partner_code = t.partner_code
+                    and s.product_code = t.product_code
+                    and s."year" = t."year"
+                    and s.est_code is not distinct from t.est_code)
+            returning reporter_iso, partner_code, product_code, "year"
+            )
+            insert into wits_rate_keys select * from vanished
+            """;
+
+    // The lowest wits_tariffs id per key wins, as in the V11 backfill.
+    private static final String UPSERT_SUMMARY_SQL = """
+            insert into wits_rate_summary (reporter_iso, partner_code, product_code, "year",
+                                           simple_average, nomen_code, est_code, source_file)
+            select distinct on (t.reporter_iso, t.partner_code, t.product_code, t."year")
+                   t.reporter_iso, t.partner_code, t.product_code, t."year",
+                   t.simple_average, t.nomen_code, t.est_code, t.source_file
+            from wits_tariffs t
+            join (select distinct * from wits_rate_keys) k
+              on k.reporter_iso = t.reporter_iso and k.partner_code = t.partner_code
+             and k.product_code = t.product_code and k."year" = t."year"
+            order by t.reporter_iso, t.partner_code, t.product_code, t."year", t.id
+            on conflict (reporter_iso, partner_code, product_code, "year") do update set
+                simple_average = excluded.simple_average,
+                nomen_code = excluded.nomen_code,
+                est_code = excluded.est_code,
+                source_file = excluded.source_file
+            where (wits_rate_summary.simple_average, wits_rate_summary.nomen_code,
+                   wits_rate_summary.est_code, wits_rate_summary.source_file)
+                is distinct from
+                  (excluded.simple_average, excluded.nomen_code, excluded.est_code, excluded.source_file)
+            """;
+
+    private static final String DELETE_SUMMARY_SQL = """
+            delete from wits_rate_summary s
+            using (select distinct * from wits_rate_keys) k
+            where s.reporter_iso = k.reporter_iso and s.partner_code = k.partner_code
+              and s.product_code = k.product_code and s."year" = k."year"
+              and not exists (
+                  select 1 from wits_tariffs t
+                  where t.reporter_iso = s.reporter_iso and t.partner_code = s.partner_code
+                    and t.product_code = s.product_code and t."year" = s."year")
+            """;
+
+    // Re-derives is_latest for every route/product the archive touched, writing only flags that moved.
+    private static final String MARK_LATEST_SQL = """
+            update wits_rate_summary s
+            set is_latest = (s."year" = l.latest_year)
+            from (
+                select m.reporter_iso, m.partner_code, m.product_code, max(m."year") as latest_year
+                from wits_rate_summary m
+                join (select distinct reporter_iso, partner_code, product_code from wits_rate_keys) k
+                  on k.reporter_iso = m.reporter_iso and k.partner_code = m.partner_code
+                 and k.product_code = m.product_code
+                group by m.reporter_iso, m.partner_code, m.product_code
+            ) l
+            where s.reporter_iso = l.reporter_iso and s.partner_code = l.partner_code
+              and s.product_code = l.product_code
+              and s.is_latest <> (s."year" = l.latest_year)
+            """;
+
+    // Loads a reporter's rows into the standalone replacement partition (%2$s).
+    private static final String RELOAD_SQL = """
+            insert into %2$s (%1$s)
+            select %1$s from (
+                select distinct on (nomen_code, reporter_iso, partner_code, product_code, "year", est_code) *
+                from wits_tariffs_stage
+                where reporter_iso = ?
+                order by nomen_code, reporter_iso, partner_code, product_code, "year", est_code, line_no desc
+            ) latest
+            on conflict (nomen_code, reporter_iso, partner_code, product_code, "year", est_code)
+            do update set
+                sum_of_rates = excluded.sum_of_rates,
+                min_rate = excluded.min_rate,
+                max_rate = excluded.max_rate,
+                simple_average = excluded.simple_average,
+                total_no_of_lines = excluded.total_no_of_lines,
+                nbr_pref_lines = excluded.nbr_pref_lines,
+                nbr_mfn_lines = excluded.nbr_mfn_lines,
+                nbr_na_lines = excluded.nbr_na_lines,
+                source_file = excluded.source_file
+            """;
+
+    // Every archive that holds rows for the reporter, by audit or by what is stored.
+    private static final String REPORTER_ARCHIVES_SQL = """
+            select source_file from wits_import_audit where ',' || reporters || ',' like ?
+            union
+            select distinct source_file from wits_tariffs where reporter_iso = ?
+            """;
+
+    private static final String REBUILD_REPORTER_SUMMARY_SQL = """
+            insert into wits_rate_summary (reporter_iso, partner_code, product_code, "year", simple_average,
+                                           nomen_code, est_code, source_file, is_latest)
+            select reporter_iso, partner_code, product_code, "year", simple_average, nomen_code, est_code, source_file,
+                   "year" = max("year") over (partition by partner_code, product_code)
+            from (
+                select distinct on (partner_code, product_code, "year") *
+                from wits_tariffs
+                where reporter_iso = ?
+                order by partner_code, product_code, "year", id
+            ) first_rows
+            """;
+
+    private static final String STAGE_REPORTERS_SQL = """
+            select string_agg(distinct reporter_iso, ',' order by reporter_iso) from wits_tariffs_stage
+            """;
+
+    // change_seq (and finished_at) only move when rows actually changed, so the app
+    // does not refresh for re-imports that turned out to be no-ops. Run after
+    // LOCK_AUDIT_SEQUENCE_SQL so the value is drawn in commit order.
+    private static final String MARK_IMPORTED_SQL = """
+            insert into wits_import_audit (source_file, finished_at, change_seq, content_sha256, row_count,
+                                           changed_rows, reporters)
+            values (?, now(), nextval('wits_import_audit_change_seq'), ?, ?, ?, ?)
+            on conflict (source_file) do update set
+                content_sha256 = excluded.content_sha256,
+                row_count = excluded.row_count,
+                changed_rows = excluded.changed_rows,
+                reporters = excluded.reporters,
+                finished_at = case when excluded.changed_rows > 0
+                                   then excluded.finished_at
+                                   else wits_import_audit.finished_at end,
+                change_seq = case when excluded.changed_rows > 0
+                                  then excluded.change_seq
+                                  else wits_import_audit.change_seq end
+            """;
+
+    // Held until commit: parallel workers draw change_seq one at a time and commit in
+    // that order, so WitsDatasetMonitor can poll for change_seq > last seen without
+    // skipping an archive that committed late. Only the mark-and-commit tail is serialised.
+    private static final String LOCK_AUDIT_SEQUENCE_SQL =
+            "select pg_advisory_xact_lock(hashtext('wits_import_audit_change_seq'))";
+
+    private static final String BACKFILL_AUDIT_SQL = """
+            insert into wits_import_audit (source_file)
+            select distinct source_file from wits_tariffs where source_file is not null
+            on conflict do nothing
+            """;
+
+    private final DataSource dataSource;
+    private final ApplicationContext applicationContext;
+    private final Path inputDir;
+    private final int workers;
+    private final boolean force;
+    private final int maxFileRetries;
+    private final List<String> reloadReporters;
+
+    public WitsBulkImporter(DataSource dataSource,
+                            ApplicationContext applicationContext,
+                            @Value("${wits.import.input-dir:}") String inputDir,
+                            @Value("${wits.import.workers:4}") int workers,
+                            @Value("${wits.import.force:false}") boolean force,
+                            @Value("${wits.import.max-file-retries:3}") int maxFileRetries,
+                            @Value("${wits.import.reload-reporters:}") String reloadReporters) {
+        this.dataSource = dataSource;
+        this.applicationContext = applicationContext;
+        this.inputDir = inputDir.isBlank() ? null : Path.of(inputDir);
+        this.workers = Math.max(1, workers);
+        this.force = force;
+        this.maxFileRetries = Math.max(1, maxFileRetries);
+        this.reloadReporters = Arrays.stream(reloadReporters.split(","))
+                .map(String::trim)
+                .filter(code -> !code.isEmpty())
+                .toList();
+        for (String code : this.reloadReporters) {
+            // Reporter codes end up in DDL, which cannot take bind parameters.
+            if (!code.matches("[A-Za-z0-9]+")) {
+                throw new IllegalArgumentException("Invalid reporter code in wits.import.reload-reporters: " + code);
+            }
+        }
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        int exitCode = 0;
+        try {
+            importAll();
+        } catch (Exception ex) {
+            log.error("WITS import failed: {}", ex.getMessage(), ex);
+            exitCode = 1;
+        }
+        int code = exitCode;
+        System.exit(SpringApplication.exit(applicationContext, () -> code));
+    }
+
+    void importAll() throws IOException, SQLException, InterruptedException {
+        if (inputDir == null || !Files.isDirectory(inputDir)) {
+            throw new IllegalArgumentException("wits.import.input-dir must point at the directory of WITS zip files");
+        }
+        List<Path> archives = listArchives(inputDir);
+        if (!reloadReporters.isEmpty()) {
+            for (String reporter : reloadReporters) {
+                reloadReporter(reporter, archives);
+            }
+            return;
+        }
+        Map<String, String> imported = loadImportedHashes();
+        log.info("WITS import: {} archives found, {} previously imported, {} workers",
+                archives.size(), imported.size(), workers);
+
+        long started = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        long totalRows = 0;
+        long changedRows = 0;
+        int unchanged = 0;
+        int failed = 0;
+        try {
+            List<Future<ArchiveResult>> results = new ArrayList<>(archives.size());
+            for (Path archive : archives) {
+                results.add(pool.submit(() -> importIfChanged(archive, imported)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                try {
+                    ArchiveResult result = results.get(i).get();
+                    if (result == null) {
+                        unchanged++;
+                    } else {
+                        totalRows += result.rows();
+                        changedRows += result.changedRows();
+                    }
+                } catch (ExecutionException ex) {
+                    failed++;
+                    log.error("{}: import failed: {}", archives.get(i).getFileName(), ex.getCause().getMessage());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        double seconds = Math.max((System.nanoTime() - started) / 1e9, 0.001);
+        log.info("WITS import finished: {} rows read, {} changed, from {} archives in {} s ({} rows/s); "
+                        + "{} unchanged, {} failed",
+                totalRows, changedRows, archives.size() - unchanged - failed,
+                String.format(Locale.ROOT, "%.1f", seconds), Math.round(totalRows / seconds), unchanged, failed);
+        if (failed > 0) {
+            throw new IllegalStateException(failed + " archives failed; rerun to resume");
+        }
+    }
+
+    /**
+     * Imports the archive unless the audit already has it with the same content hash.
+     * Rows from the Python importer have no hash; they count as done unless forced,
+     * which keeps the old resume behaviour. Returns null when skipped.
+     */
+    private ArchiveResult importIfChanged(Path archive, Map<String, String> imported) throws Exception {
+        String sourceFile = archive.getFileName().toString();
+        String sha256 = sha256(archive);
+        if (!force && imported.containsKey(sourceFile)) {
+            String previous = imported.get(sourceFile);
+            if (previous == null || previous.equals(sha256)) {
+                log.debug("{}: unchanged since last import, skipping", sourceFile);
+                return null;
+            }
+        }
+        return importWithRetries(archive, sha256);
+    }
+
+    private ArchiveResult importWithRetries(Path archive, String sha256) throws Exception {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return importArchive(archive, sha256);
+            } catch (SQLException ex) {
+                if (!isRetryable(ex) || attempt >= maxFileRetries) {
+                    throw ex;
+                }
+                long delaySeconds = Math.min(1L << attempt, 30);
+                log.warn("{}: transient database failure ({}). Retrying in {}s ({}/{})",
+                        archive.getFileName(), ex.getMessage(), delaySeconds, attempt, maxFileRetries);
+                Thread.sleep(delaySeconds * 1000);
+            }
+        }
+    }
+
+    ArchiveResult importArchive(Path archive, String sha256) throws IOException, SQLException {
+        String sourceFile = archive.getFileName().toString();
+        long started = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_STAGE_SQL);
+                    statement.execute(CREATE_CHANGED_KEYS_SQL);
+                }
+                long rows = copyArchive(connection, archive, sourceFile);
+                int deleted;
+                int upserted;
+                String reporters;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("analyze wits_tariffs_stage");
+                    reporters = stageReporters(statement);
+                    statement.execute(ENSURE_PARTITIONS_SQL);
+                }
+                String partitionFilter = reporters == null ? "" : "and t.reporter_iso = any (string_to_array(?, ','))";
+                try (var statement = connection.prepareStatement(DELETE_VANISHED_SQL.formatted(partitionFilter))) {
+                    statement.setString(1, sourceFile);
+                    if (reporters != null) {
+                        statement.setString(2, reporters);
+                    }
+                    deleted = statement.executeUpdate();
+                }
+                try (Statement statement = connection.createStatement()) {
+                    upserted = statement.executeUpdate(MERGE_SQL);
+                    if (deleted + upserted > 0) {
+                        statement.execute("analyze wits_rate_keys");
+                        statement.executeUpdate(UPSERT_SUMMARY_SQL);
+                        statement.executeUpdate(DELETE_SUMMARY_SQL);
+                        statement.executeUpdate(MARK_LATEST_SQL);
+                    }
+                }
+                long changed = (long) deleted + upserted;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(LOCK_AUDIT_SEQUENCE_SQL);
+                }
+                try (var statement = connection.prepareStatement(MARK_IMPORTED_SQL)) {
+                    statement.setString(1, sourceFile);
+                    statement.setString(2, sha256);
+                    statement.setLong(3, rows);
+                    statement.setLong(4, changed);
+                    statement.setString(5, reporters == null ? "" : reporters);
+                    statement.executeUpdate();
+                }
+                connection.commit();
+                double seconds = Math.max((System.nanoTime() - started) / 1e9, 0.001);
+                log.info("{}: {} rows, {} written, {} deleted in {} s, {} rows/s", sourceFile, rows, upserted,
+                        deleted, String.format(Locale.ROOT, "%.2f", seconds), Math.round(rows / seconds));
+                return new ArchiveResult(rows, changed);
+            } catch (IOException | SQLException | RuntimeException ex) {
+                rollbackQuietly(connection);
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Rebuilds one reporter's partition from every archive that holds its rows.
+     * The rows are loaded into a standalone copy of the partition while the live
+     * one keeps serving. The copy is then swapped in with a plain {@code DETACH} and
+     * {@code ATTACH} in one transaction, together with the reporter's summary rows and
+     * audit entries. The detach holds an exclusive lock on {@code wits_tariffs} until
+     * commit, so readers wait out the swap instead of seeing the reporter with no rows;
+     * the swap is short because the copy's check constraint lets the attach skip its
+     * scan. Nothing is updated in place, so the reload leaves no dead tuples behind.
+     */
+    void reloadReporter(String reporter, List<Path> available) throws IOException, SQLException {
+        long started = System.nanoTime();
+        try (Connection connection = dataSource.getConnection()) {
+            String partition;
+            boolean attached;
+            List<Path> archives;
+            try (var statement = connection.prepareStatement("""
+                    select p.name, exists (select 1 from pg_inherits i where i.inhrelid = to_regclass(p.name))
+                    from (select wits_tariffs_partition_name(?) as name) p
+                    """)) {
+                statement.setString(1, reporter);
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    partition = rs.getString(1);
+                    attached = rs.getBoolean(2);
+                }
+            }
+            archives = archivesForReporter(connection, reporter, available);
+            String replacement = partition + "_reload";
+
+            connection.setAutoCommit(false);
+            List<ReloadedArchive> loaded = new ArrayList<>(archives.size());
+            long rows = 0;
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("drop table if exists " + replacement);
+                    // INCLUDING ALL copies the partitioned indexes, so ATTACH adopts them instead of building.
+                    statement.execute("create table " + replacement + " (like wits_tariffs including all)");
+                    statement.execute("alter table " + replacement + " add constraint " + replacement
+                            + "_reporter check (reporter_iso = '" + reporter + "')");
+                    statement.execute(CREATE_STAGE_SQL);
+                }
+                for (Path archive : archives) {
+                    String sourceFile = archive.getFileName().toString();
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("truncate wits_tariffs_stage");
+                    }
+                    long archiveRows = copyArchive(connection, archive, sourceFile);
+                    String reporters;
+                    try (Statement statement = connection.createStatement()) {
+                        reporters = stageReporters(statement);
+                    }
+                    try (var statement = connection.prepareStatement(
+                            RELOAD_SQL.formatted(WitsCsvCopyEncoder.TARGET_COLUMNS, replacement))) {
+                        statement.setString(1, reporter);
+                        statement.executeUpdate();
+                    }
+                    loaded.add(new ReloadedArchive(sourceFile, sha256(archive), archiveRows, reporters));
+                    rows += archiveRows;
+                }
+                connection.commit();
+            } catch (IOException | SQLException | RuntimeException ex) {
+                rollbackQuietly(connection);
+                throw ex;
+            }
+
+            // Not CONCURRENTLY: that form commits the detach on its own and leaves a gap before the attach.
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    if (attached) {
+                        statement.execute("alter table wits_tariffs detach partition " + partition);
+                    }
+                    statement.execute("alter table wits_tariffs attach partition " + replacement
+                            + " for values in ('" + reporter + "')");
+                    statement.execute("drop table if exists " + partition);
+                    statement.execute("alter table " + replacement + " rename to " + partition);
+                }
+                try (var statement = connection.prepareStatement("delete from wits_rate_summary where reporter_iso = ?")) {
+                    statement.setString(1, reporter);
+                    statement.executeUpdate();
+                }
+                try (var statement = connection.prepareStatement(REBUILD_REPORTER_SUMMARY_SQL)) {
+                    statement.setString(1, reporter);
+                    statement.executeUpdate();
+                }
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(LOCK_AUDIT_SEQUENCE_SQL);
+                }
+                try (var statement = connection.prepareStatement(MARK_IMPORTED_SQL)) {
+                    for (ReloadedArchive archive : loaded) {
+                        statement.setString(1, archive.sourceFile());
+                        statement.setString(2, archive.sha256());
+                        statement.setLong(3, archive.rows());
+                        statement.setLong(4, archive.rows());
+                        statement.setString(5, archive.reporters() == null ? "" : archive.reporters());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException | RuntimeException ex) {
+                rollbackQuietly(connection);
+                log.error("Reporter {}: swap failed and was rolled back; {} still serves the previous rows",
+                        reporter, partition);
+                throw ex;
+            }
+            double seconds = Math.max((System.nanoTime() - started) / 1e9, 0.001);
+            log.info("Reporter {}: reloaded {} rows from {} archives in {} s", reporter, rows, archives.size(),
+                    String.format(Locale.ROOT, "%.1f", seconds));
+        }
+    }
+
+    // Refuses to reload a reporter when one of its archives is missing, since its rows would be lost.
+    private List<Path> archivesForReporter(Connection connection, String reporter, List<Path> available)
+            throws SQLException {
+        Map<String, Path> byName = new HashMap<>();
+        for (Path archive : available) {
+            byName.put(archive.getFileName().toString(), archive);
+        }
+        List<Path> archives = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        try (var statement = connection.prepareStatement(REPORTER_ARCHIVES_SQL)) {
+            statement.setString(1, "%," + reporter + ",%");
+            statement.setString(2, reporter);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Path archive = byName.get(rs.getString(1));
+                    if (archive == null) {
+                        missing.add(rs.getString(1));
+                    } else {
+                        archives.add(archive);
+                    }
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException("Reporter " + reporter + ": archives not found in " + inputDir
+                    + ": " + missing);
+        }
+        archives.sort(null);
+        return archives;
+    }
+
+    private static String stageReporters(Statement statement) throws SQLException {
+        try (ResultSet rs = statement.executeQuery(STAGE_REPORTERS_SQL)) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private long copyArchive(Connection connection, Path archive, String sourceFile) throws IOException, SQLException {
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("copy wits_tariffs_stage (" + WitsCsvCopyEncoder.TARGET_COLUMNS + ") from stdin");
+        try (InputStream file = new BufferedInputStream(Files.newInputStream(archive), 1 << 16);
+             ZipInputStream zip = new ZipInputStream(file)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (!entry.isDirectory() && entry.getName().toLowerCase(Locale.ROOT).endsWith(".csv")) {
+                    break;
+                }
+            }
+            if (entry == null) {
+                log.warn("{}: no CSV inside archive", sourceFile);
+                copyIn.endCopy();
+                return 0;
+            }
+            WitsCsvCopyEncoder encoder = new WitsCsvCopyEncoder(sourceFile, (buffer, offset, length) -> {
+                try {
+                    copyIn.writeToCopy(buffer, offset, length);
+                } catch (SQLException ex) {
+                    throw new IOException(ex);
+                }
+            });
+            long rows = encoder.encode(zip);
+            copyIn.endCopy();
+            return rows;
+        } catch (IOException ex) {
+            // surface server-side COPY errors as SQLExceptions so retries can see the SQLState
+            if (ex.getCause() instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            throw ex;
+        } finally {
+            if (copyIn.isActive()) {
+                copyIn.cancelCopy();
+            }
+        }
+    }
+
+    // source_file -> content hash (null for archives imported before hashes were kept)
+    private Map<String, String> loadImportedHashes() throws SQLException {
+        Map<String, String> imported = new HashMap<>();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.executeUpdate(BACKFILL_AUDIT_SQL);
+            try (ResultSet rs = statement.executeQuery("select source_file, content_sha256 from wits_import_audit")) {
+                while (rs.next()) {
+                    imported.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+        return imported;
+    }
+
+    static String sha256(Path archive) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(archive)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static List<Path> listArchives(Path directory) throws IOException {
+        List<Path> archives = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.zip")) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path)) {
+                    archives.add(path);
+                }
+            }
+        }
+        archives.sort(null);
+        return archives;
+    }
+
+    record ArchiveResult(long rows, long changedRows) {}
+
+    private record ReloadedArchive(String sourceFile, String sha256, long rows, String reporters) {}
+
+    // Connection loss, or a deadlock with another worker refreshing overlapping summary rows
+    // (archives of different nomenclatures share reporter/year keys).
+    private static boolean isRetryable(SQLException ex) {
+        String state = ex.getSQLState();
+        return state != null && (state.startsWith("08") || state.equals("40P01") || state.equals("40001"));
+    }
+
+    private static void rollbackQuietly(Connection connection) {
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+            // the connection is being discarded anyway
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.tariffkey.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Turns a WITS AVEPref CSV into PostgreSQL {@code COPY ... FROM STDIN} text rows
+ * without building per-row Strings. Bytes are split into fields in place,
+ * trimmed, and copied straight into the output buffer in {@link #TARGET_COLUMNS}
+ * order, followed by the archive name as {@code source_file}.
+ *
+ * Blank values become {@code \N}; numbers are passed through untouched and left
+ * for PostgreSQL to parse, so a malformed value fails the whole file like the
+ * Python importer did.
+ */
+final class WitsCsvCopyEncoder {
+
+    /** Receives encoded COPY rows in chunks. */
+    interface CopySink {
+        void write(byte[] buffer, int offset, int length) throws IOException;
+    }
+
+    /** CSV header for each target column, in the same order as {@link #TARGET_COLUMNS}. */
+    static final String[] CSV_COLUMNS = {
+            "NomenCode", "Reporter_ISO_N", "Partner", "ProductCode", "Year",
+            "Sum_Of_Rates", "Min_Rate", "Max_Rate", "SimpleAverage",
+            "TotalNoOfLines", "Nbr_Pref_Lines", "Nbr_MFN_Lines", "Nbr_NA_Lines", "EstCode"
+    };
+
+    static final String TARGET_COLUMNS = "nomen_code, reporter_iso, partner_code, product_code, \"year\", "
+            + "sum_of_rates, min_rate, max_rate, simple_average, "
+            + "total_no_of_lines, nbr_pref_lines, nbr_mfn_lines, nbr_na_lines, est_code, source_file";
+
+    private static final int READ_CHUNK = 64 * 1024;
+    private static final int FLUSH_THRESHOLD = 256 * 1024;
+    private static final byte[] NULL_MARKER = {'\\', 'N'};
+
+    private final byte[] sourceFile;
+    private final CopySink sink;
+
+    private byte[] record = new byte[512];
+    private int recordLength;
+    private boolean inQuotes;
+    private int[] fieldStart = new int[32];
+    private int[] fieldEnd = new int[32];
+    private int fieldCount;
+    private int[] columnIndexes;
+
+    private byte[] out = new byte[FLUSH_THRESHOLD + 4096];
+    private int outLength;
+    private long rows;
+
+    WitsCsvCopyEncoder(String sourceFile, CopySink sink) {
+        this.sourceFile = sourceFile.getBytes(StandardCharsets.UTF_8);
+        this.sink = sink;
+    }
+
+    /** Encodes the whole stream and returns the number of data rows written. */
+    long encode(InputStream in) throws IOException {
+        byte[] chunk = new byte[READ_CHUNK];
+        boolean first = true;
+        int read;
+        while ((read = in.read(chunk)) > 0) {
+            int offset = 0;
+            if (first) {
+                first = false;
+                if (read >= 3 && (chunk[0] & 0xFF) == 0xEF && (chunk[1] & 0xFF) == 0xBB && (chunk[2] & 0xFF) == 0xBF) {
+                    offset = 3;
+                }
+            }
+            for (int i = offset; i < read; i++) {
+                accept(chunk[i]);
+            }
+        }
+        if (recordLength > 0) {
+            endRecord();
+        }
+        if (columnIndexes == null) {
+            throw new IOException("CSV is empty");
+        }
+        flush();
+        return rows;
+    }
+
+    private void accept(byte b) throws IOException {
+        if (b == '"') {
+            inQuotes = !inQuotes;
+        } else if (b == '\n' && !inQuotes) {
+            endRecord();
+            return;
+        }
+        if (recordLength == record.length) {
+            record = Arrays.copyOf(record, record.length * 2);
+        }
+        record[recordLength++] = b;
+    }
+
+    private void endRecord() throws IOException {
+        int length = recordLength;
+        recordLength = 0;
+        if (length > 0 && record[length - 1] == '\r') {
+            length--;
+        }
+        if (length == 0) {
+            return;
+        }
+        split(length);
+        if (columnIndexes == null) {
+            columnIndexes = resolveHeader();
+            return;
+        }
+        writeRow();
+    }
+
+    // Records field boundaries; quoted fields are unescaped in place, which never
+    // makes them longer, so the record buffer can be reused as-is.
+    private void split(int length) {
+        fieldCount = 0;
+        int write = 0;
+        int read = 0;
+        while (read <= length) {
+            ensureFieldCapacity();
+            fieldStart[fieldCount] = write;
+            boolean quoted = false;
+            while (read < length) {
+                byte b = record[read];
+                if (b == '"') {
+                    if (quoted && read + 1 < length && record[read + 1] == '"') {
+                        record[write++] = '"';
+                        read += 2;
+                        continue;
+                    }
+                    quoted = !quoted;
+                    read++;
+                    continue;
+                }
+                if (b == ',' && !quoted) {
+                    break;
+                }
+                record[write++] = b;
+                read++;
+            }
+            fieldEnd[fieldCount++] = write;
+            read++; // skip the comma (or step past the end)
+        }
+    }
+
+    private int[] resolveHeader() throws IOException {
+        List<String> header = new ArrayList<>(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            header.add(new String(record, fieldStart[i], fieldEnd[i] - fieldStart[i], StandardCharsets.UTF_8).trim());
+        }
+        int[] indexes = new int[CSV_COLUMNS.length];
+        List<String> missing = new ArrayList<>();
+        for (int i = 0; i < CSV_COLUMNS.length; i++) {
+            indexes[i] = header.indexOf(CSV_COLUMNS[i]);
+            if (indexes[i] < 0) {
+                missing.add(CSV_COLUMNS[i]);
+            }
+        }
+        if (!missing.isEmpty()) {
+            throw new IOException("Missing expected columns: " + missing);
+        }
+        return indexes;
+    }
+
+    private void writeRow() throws IOException {
+        for (int column : columnIndexes) {
+            if (column < fieldCount) {
+                writeField(fieldStart[column], fieldEnd[column]);
+            } else {
+                writeRaw(NULL_MARKER, 0, NULL_MARKER.length);
+            }
+            writeByte((byte) '\t');
+        }
+        writeRaw(sourceFile, 0, sourceFile.length);
+        writeByte((byte) '\n');
+        rows++;
+        if (outLength >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    private void writeField(int start, int end) {
+        while (start < end && record[start] == ' ') {
+            start++;
+        }
+        while (end > start && record[end - 1] == ' ') {
+            end--;
+        }
+        if (start == end) {
+            writeRaw(NULL_MARKER, 0, NULL_MARKER.length);
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            byte b = record[i];
+            switch (b) {
+                case '\\' -> { writeByte((byte) '\\'); writeByte((byte) '\\'); }
+                case '\t' -> { writeByte((byte) '\\'); writeByte((byte) 't'); }
+                case '\n' -> { writeByte((byte) '\\'); writeByte((byte) 'n'); }
+                case '\r' -> { writeByte((byte) '\\'); writeByte((byte) 'r'); }
+                default -> writeByte(b);
+            }
+        }
+    }
+
+    private void writeRaw(byte[] bytes, int offset, int length) {
+        ensureOutCapacity(length);
+        System.arraycopy(bytes, offset, out, outLength, length);
+        outLength += length;
+    }
+
+    private void writeByte(byte b) {
+        ensureOutCapacity(1);
+        out[outLength++] = b;
+    }
+
+    private void ensureOutCapacity(int extra) {
+        if (outLength + extra > out.length) {
+            out = Arrays.copyOf(out, Math.max(out.length * 2, outLength + extra));
+        }
+    }
+
+    private void ensureFieldCapacity() {
+        if (fieldCount == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+            fieldEnd = Arrays.copyOf(fieldEnd, fieldCount * 2);
+        }
+    }
+
+    private void flush() throws IOException {
+        if (outLength > 0) {
+            sink.write(out, 0, outLength);
+            outLength = 0;
+        }
+    }
+}
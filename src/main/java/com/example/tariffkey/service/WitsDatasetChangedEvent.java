@@ -0,0 +1,23 @@
+package com.example.tariffkey.service;
+
+import java.util.Set;
+
+/**
+ * Published whenever a new WITS import lands, so in-memory indexes built from
+ * {@code wits_tariffs} can refresh themselves. The version is the latest
+ * {@code wits_import_audit.change_seq} seen by {@link WitsDatasetMonitor}.
+ *
+ * {@code changedReporters} lists the reporters whose rows changed; it is null when
+ * that is unknown (first load, or archives imported by the Python script), in
+ * which case listeners should rebuild everything.
+ */
+public record WitsDatasetChangedEvent(Long version, Set<String> changedReporters) {
+
+    public static WitsDatasetChangedEvent full(Long version) {
+        return new WitsDatasetChangedEvent(version, null);
+    }
+
+    public boolean isFullReload() {
+        return changedReporters == null;
+    }
+}
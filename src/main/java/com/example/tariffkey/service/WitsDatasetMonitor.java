@@ -0,0 +1,93 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.WitsImportAudit;
+import com.example.tariffkey.repository.WitsImportAuditRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Watches {@code wits_import_audit} for newly finished archives. The importer runs
+ * outside the app, so polling the audit table is the only signal we get that the
+ * dataset changed underneath us. Progress is tracked by {@code change_seq}, which
+ * importers draw under a lock held until commit, so an archive can never become
+ * visible with a value below one already seen.
+ */
+@Service
+public class WitsDatasetMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(WitsDatasetMonitor.class);
+
+    private final WitsImportAuditRepository importAuditRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private volatile Long currentVersion;
+    private volatile boolean initialized;
+
+    public WitsDatasetMonitor(WitsImportAuditRepository importAuditRepository,
+                              ApplicationEventPublisher eventPublisher) {
+        this.importAuditRepository = importAuditRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    public Long currentVersion() {
+        return currentVersion;
+    }
+
+    @Scheduled(fixedDelayString = "${wits.dataset.poll-interval-ms:60000}")
+    public void poll() {
+        Long latest;
+        try {
+            latest = importAuditRepository.findLatestChangeSeq().orElse(null);
+        } catch (DataAccessException ex) {
+            log.warn("Unable to read wits_import_audit: {}", ex.getMessage());
+            return;
+        }
+        if (!initialized) {
+            currentVersion = latest;
+            initialized = true;
+            return;
+        }
+        if (latest != null && !Objects.equals(latest, currentVersion)) {
+            Set<String> changedReporters;
+            try {
+                changedReporters = changedReportersSince(currentVersion);
+            } catch (DataAccessException ex) {
+                changedReporters = null;
+            }
+            log.info("WITS dataset changed (audit change {}), publishing {} refresh", latest,
+                    changedReporters == null ? "full" : "reporter " + changedReporters);
+            eventPublisher.publishEvent(new WitsDatasetChangedEvent(latest, changedReporters));
+            // Only advertised once listeners have dropped their caches, as history ETags rely on it.
+            currentVersion = latest;
+        }
+    }
+
+    // Reporters touched by archives changed after the given version, or null if any
+    // of them lacks change tracking and listeners have to rebuild everything.
+    private Set<String> changedReportersSince(Long since) {
+        if (since == null) {
+            return null;
+        }
+        Set<String> reporters = new TreeSet<>();
+        for (WitsImportAudit audit : importAuditRepository.findByChangeSeqGreaterThan(since)) {
+            if (audit.getChangedRows() == null || audit.getReporters() == null) {
+                return null;
+            }
+            if (audit.getChangedRows() > 0) {
+                for (String reporter : audit.getReporters().split(",")) {
+                    if (!reporter.isBlank()) {
+                        reporters.add(reporter.trim());
+                    }
+                }
+            }
+        }
+        return Set.copyOf(reporters);
+    }
+}
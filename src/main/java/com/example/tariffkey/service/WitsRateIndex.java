@@ -0,0 +1,407 @@
+package com.example.tariffkey.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only, in-memory copy of the WITS simple-average rates used by quotes.
+ *
+ * Every (reporter, partner, product, year) combination is packed into a single
+ * {@code long} key and kept in a sorted array, with the rate stored as a scaled
+ * int alongside it. Because the year sits in the lowest bits, all years of a
+ * route/product are adjacent, so the "latest year" fallback is answered with
+ * the same binary search. Snapshots are immutable and swapped atomically.
+ *
+ * Rows come from {@code wits_rate_summary}, which the importers already reduce to
+ * one rate per key. When an import reports which reporters changed, only their
+ * rows are re-read; the rest of the next snapshot is copied from the current one.
+ */
+@Service
+public class WitsRateIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(WitsRateIndex.class);
+
+    static final int NOT_FOUND = -1;
+
+    private static final int YEAR_BITS = 12;
+    private static final int PRODUCT_BITS = 20;
+    private static final int PARTNER_BITS = 16;
+    private static final int REPORTER_BITS = 15; // keeps packed keys non-negative
+    private static final int YEAR_BASE = 1900;
+    private static final long YEAR_MASK = (1L << YEAR_BITS) - 1;
+    // The top year slot is reserved as the upper bound for latest-year searches.
+    private static final int MAX_YEAR_SLOT = (int) YEAR_MASK - 1;
+
+    // simple_average is NUMERIC(12,4), so scaling by 10^4 keeps it exact.
+    private static final int RATE_SCALE = 10_000;
+    private static final int NO_RATE = Integer.MIN_VALUE;
+
+    private static final String LOAD_SQL = """
+            select reporter_iso, partner_code, product_code, "year",
+                   simple_average, nomen_code, est_code, source_file
+            from wits_rate_summary
+            %s
+            order by reporter_iso, partner_code, product_code, "year"
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int fetchSize;
+    private final Object rebuildLock = new Object();
+    private volatile Snapshot snapshot;
+
+    public WitsRateIndex(JdbcTemplate jdbcTemplate,
+                         TransactionTemplate transactionTemplate,
+                         @Value("${wits.rate-index.enabled:true}") boolean enabled,
+                         @Value("${wits.rate-index.fetch-size:10000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Returns the current snapshot, or {@code null} while the index is disabled
+     * or has not finished its first load.
+     */
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuild();
+    }
+
+    @EventListener
+    public void onDatasetChanged(WitsDatasetChangedEvent event) {
+        if (event.isFullReload()) {
+            rebuild();
+        } else if (!event.changedReporters().isEmpty()) {
+            refreshReporters(event.changedReporters());
+        }
+    }
+
+    public void rebuild() {
+        refresh(null);
+    }
+
+    /** Re-reads the given reporters' rows and keeps everything else from the current snapshot. */
+    public void refreshReporters(Set<String> reporters) {
+        refresh(Set.copyOf(reporters));
+    }
+
+    private void refresh(Set<String> reporters) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (rebuildLock) {
+            long started = System.nanoTime();
+            Snapshot current = snapshot;
+            Set<String> scope = current == null ? null : reporters;
+            try {
+                Snapshot next = transactionTemplate.execute(status -> load(current, scope));
+                snapshot = next;
+                log.info("WITS rate index {}: {} keys from {} rows in {} ms",
+                        scope == null ? "loaded" : "refreshed for reporters " + scope,
+                        next.size(), next.sourceRows, (System.nanoTime() - started) / 1_000_000);
+            } catch (DataAccessException | IllegalStateException ex) {
+                log.warn("WITS rate index rebuild failed, keeping previous snapshot: {}", ex.getMessage());
+            }
+        }
+    }
+
+    private Snapshot load(Snapshot current, Set<String> reporters) {
+        SnapshotBuilder builder = new SnapshotBuilder();
+        List<String> params = reporters == null ? List.of() : List.copyOf(reporters);
+        String where = "";
+        if (reporters != null) {
+            builder.copyFrom(current, reporters);
+            where = reporterFilter(params.size());
+        }
+        String sql = LOAD_SQL.formatted(where);
+        jdbcTemplate.query(connection -> {
+            var statement = connection.prepareStatement(sql);
+            for (int i = 0; i < params.size(); i++) {
+                statement.setString(i + 1, params.get(i));
+            }
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, rs -> {
+            builder.add(rs.getString(1), rs.getString(2), rs.getString(3), rs.getInt(4),
+                    rs.getBigDecimal(5), rs.getString(6), rs.getString(7), rs.getString(8));
+        });
+        return builder.build();
+    }
+
+    /** {@code where} clause restricting a WITS table to the given number of bound reporter codes. */
+    static String reporterFilter(int reporters) {
+        return reporters == 0
+                ? "where 1 = 0"
+                : "where reporter_iso in (" + String.join(", ", Collections.nCopies(reporters, "?")) + ")";
+    }
+
+    public static final class Snapshot {
+
+        private final Map<String, Integer> reporterIds;
+        private final Map<String, Integer> partnerIds;
+        private final Map<String, Integer> productIds;
+        private final String[] reporterCodes;
+        private final String[] partnerCodes;
+        private final String[] productCodes;
+        private final long[] keys;
+        private final int[] rates;
+        private final int[] attributes;
+        private final String[] nomenCodes;
+        private final String[] estCodes;
+        private final String[] sourceFiles;
+        private final int sourceRows;
+
+        private Snapshot(Map<String, Integer> reporterIds,
+                         Map<String, Integer> partnerIds,
+                         Map<String, Integer> productIds,
+                         String[] reporterCodes,
+                         String[] partnerCodes,
+                         String[] productCodes,
+                         long[] keys,
+                         int[] rates,
+                         int[] attributes,
+                         String[] nomenCodes,
+                         String[] estCodes,
+                         String[] sourceFiles,
+                         int sourceRows) {
+            this.reporterIds = reporterIds;
+            this.partnerIds = partnerIds;
+            this.productIds = productIds;
+            this.reporterCodes = reporterCodes;
+            this.partnerCodes = partnerCodes;
+            this.productCodes = productCodes;
+            this.keys = keys;
+            this.rates = rates;
+            this.attributes = attributes;
+            this.nomenCodes = nomenCodes;
+            this.estCodes = estCodes;
+            this.sourceFiles = sourceFiles;
+            this.sourceRows = sourceRows;
+        }
+
+        public int size() {
+            return keys.length;
+        }
+
+        /** Slot of the exact-year entry, or {@link #NOT_FOUND}. */
+        public int find(String reporter, String partner, String product, int year) {
+            long prefix = routePrefix(reporter, partner, product);
+            int slot = yearSlot(year);
+            if (prefix < 0 || slot < 0) {
+                return NOT_FOUND;
+            }
+            int index = Arrays.binarySearch(keys, prefix | slot);
+            return index >= 0 ? index : NOT_FOUND;
+        }
+
+        /** Slot of the most recent year for the route/product, or {@link #NOT_FOUND}. */
+        public int findLatest(String reporter, String partner, String product) {
+            long prefix = routePrefix(reporter, partner, product);
+            if (prefix < 0) {
+                return NOT_FOUND;
+            }
+            int insertion = -Arrays.binarySearch(keys, prefix | YEAR_MASK) - 1;
+            int candidate = insertion - 1;
+            if (candidate >= 0 && (keys[candidate] & ~YEAR_MASK) == prefix) {
+                return candidate;
+            }
+            return NOT_FOUND;
+        }
+
+        /** Rate at the slot in decimal form (7.5% becomes 0.075). */
+        public double rateAt(int slot) {
+            int scaled = rates[slot];
+            return scaled == NO_RATE ? 0.0 : scaled / (RATE_SCALE * 100.0);
+        }
+
+        public int yearAt(int slot) {
+            return (int) (keys[slot] & YEAR_MASK) + YEAR_BASE;
+        }
+
+        public String nomenCodeAt(int slot) {
+            return nomenCodes[(attributes[slot] >>> 8) & 0xFF];
+        }
+
+        public String estCodeAt(int slot) {
+            return estCodes[attributes[slot] & 0xFF];
+        }
+
+        public String sourceFileAt(int slot) {
+            return sourceFiles[attributes[slot] >>> 16];
+        }
+
+        private long routePrefix(String reporter, String partner, String product) {
+            Integer reporterId = reporter == null ? null : reporterIds.get(reporter);
+            Integer partnerId = partner == null ? null : partnerIds.get(partner);
+            Integer productId = product == null ? null : productIds.get(product);
+            if (reporterId == null || partnerId == null || productId == null) {
+                return -1;
+            }
+            return pack(reporterId, partnerId, productId);
+        }
+    }
+
+    private static long pack(int reporterId, int partnerId, int productId) {
+        return ((long) reporterId << (PARTNER_BITS + PRODUCT_BITS + YEAR_BITS))
+                | ((long) partnerId << (PRODUCT_BITS + YEAR_BITS))
+                | ((long) productId << YEAR_BITS);
+    }
+
+    private static int yearSlot(int year) {
+        int slot = year - YEAR_BASE;
+        return slot < 0 || slot > MAX_YEAR_SLOT ? -1 : slot;
+    }
+
+    private static final class SnapshotBuilder {
+
+        private final Map<String, Integer> reporterIds = new HashMap<>();
+        private final Map<String, Integer> partnerIds = new HashMap<>();
+        private final Map<String, Integer> productIds = new HashMap<>();
+        private final Map<String, Integer> nomenIds = new HashMap<>();
+        private final Map<String, Integer> estIds = new HashMap<>();
+        private final Map<String, Integer> sourceIds = new HashMap<>();
+        private long[] keys = new long[1024];
+        private int[] rates = new int[1024];
+        private int[] attributes = new int[1024];
+        private int count;
+        private int skipped;
+
+        void add(String reporter, String partner, String product, int year, BigDecimal simpleAverage,
+                 String nomenCode, String estCode, String sourceFile) {
+            int slot = yearSlot(year);
+            if (reporter == null || partner == null || product == null || slot < 0) {
+                skipped++;
+                return;
+            }
+            append(reporter, partner, product, slot, scaleRate(simpleAverage), nomenCode, estCode, sourceFile);
+        }
+
+        // Carries over every entry of the previous snapshot except the given reporters'.
+        void copyFrom(Snapshot previous, Set<String> excludedReporters) {
+            for (int i = 0; i < previous.keys.length; i++) {
+                long key = previous.keys[i];
+                String reporter = previous.reporterCodes[(int) (key >>> (PARTNER_BITS + PRODUCT_BITS + YEAR_BITS))];
+                if (excludedReporters.contains(reporter)) {
+                    continue;
+                }
+                int partnerId = (int) ((key >>> (PRODUCT_BITS + YEAR_BITS)) & ((1L << PARTNER_BITS) - 1));
+                int productId = (int) ((key >>> YEAR_BITS) & ((1L << PRODUCT_BITS) - 1));
+                append(reporter, previous.partnerCodes[partnerId], previous.productCodes[productId],
+                        (int) (key & YEAR_MASK), previous.rates[i],
+                        previous.nomenCodeAt(i), previous.estCodeAt(i), previous.sourceFileAt(i));
+            }
+        }
+
+        private void append(String reporter, String partner, String product, int slot, int scaledRate,
+                            String nomenCode, String estCode, String sourceFile) {
+            if (count == keys.length) {
+                int capacity = count + (count >> 1);
+                keys = Arrays.copyOf(keys, capacity);
+                rates = Arrays.copyOf(rates, capacity);
+                attributes = Arrays.copyOf(attributes, capacity);
+            }
+            long key = pack(
+                    intern(reporterIds, reporter, REPORTER_BITS),
+                    intern(partnerIds, partner, PARTNER_BITS),
+                    intern(productIds, product, PRODUCT_BITS)) | slot;
+            keys[count] = key;
+            rates[count] = scaledRate;
+            attributes[count] = (intern(sourceIds, sourceFile, 16) << 16)
+                    | (intern(nomenIds, nomenCode, 8) << 8)
+                    | intern(estIds, estCode, 8);
+            count++;
+        }
+
+        Snapshot build() {
+            // The summary has one row per key, so duplicates only appear if a reporter
+            // was both copied and re-read; the first one wins.
+            long[] sorted = Arrays.copyOf(keys, count);
+            Arrays.sort(sorted);
+            int unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (unique == 0 || sorted[unique - 1] != sorted[i]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            sorted = Arrays.copyOf(sorted, unique);
+            int[] sortedRates = new int[unique];
+            int[] sortedAttributes = new int[unique];
+            BitSet filled = new BitSet(unique);
+            for (int i = 0; i < count; i++) {
+                int position = Arrays.binarySearch(sorted, keys[i]);
+                if (!filled.get(position)) {
+                    filled.set(position);
+                    sortedRates[position] = rates[i];
+                    sortedAttributes[position] = attributes[i];
+                }
+            }
+            if (skipped > 0) {
+                log.warn("WITS rate index skipped {} rows with missing codes or unsupported years", skipped);
+            }
+            return new Snapshot(
+                    Map.copyOf(reporterIds),
+                    Map.copyOf(partnerIds),
+                    Map.copyOf(productIds),
+                    toArray(reporterIds),
+                    toArray(partnerIds),
+                    toArray(productIds),
+                    sorted,
+                    sortedRates,
+                    sortedAttributes,
+                    toArray(nomenIds),
+                    toArray(estIds),
+                    toArray(sourceIds),
+                    count + skipped);
+        }
+
+        private static int intern(Map<String, Integer> dictionary, String value, int bits) {
+            Integer existing = dictionary.get(value);
+            if (existing != null) {
+                return existing;
+            }
+            int id = dictionary.size();
+            if (id >= (1 << bits)) {
+                throw new IllegalStateException("Too many distinct values for a " + bits + "-bit dictionary");
+            }
+            dictionary.put(value, id);
+            return id;
+        }
+
+        private static String[] toArray(Map<String, Integer> dictionary) {
+            String[] values = new String[dictionary.size()];
+            dictionary.forEach((value, id) -> values[id] = value);
+            return values;
+        }
+
+        private static int scaleRate(BigDecimal simpleAverage) {
+            if (simpleAverage == null) {
+                return NO_RATE;
+            }
+            long scaled = simpleAverage.movePointRight(4).longValue();
+            return (int) Math.max(Integer.MIN_VALUE + 1L, Math.min(Integer.MAX_VALUE, scaled));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+-- Covering indexes for the history read path (TariffHistoryStore). Each one
+-- matches one filter shape, ends in ("year", id) for keyset paging and carries
+-- the rate columns so the planner can answer with an index-only scan.
+
+CREATE INDEX IF NOT EXISTS idx_wits_history_route
+    ON wits_tariffs (reporter_iso, partner_code, product_code, "year", id)
+    INCLUDE (simple_average, sum_of_rates, total_no_of_lines, max_rate, min_rate);
+
+CREATE INDEX IF NOT EXISTS idx_wits_history_reporter_partner
+    ON wits_tariffs (reporter_iso, partner_code, "year", id)
+    INCLUDE (product_code, simple_average, sum_of_rates, total_no_of_lines, max_rate, min_rate);
+
+CREATE INDEX IF NOT EXISTS idx_wits_history_product
+    ON wits_tariffs (product_code, "year", id)
+    INCLUDE (reporter_iso, partner_code, simple_average, sum_of_rates, total_no_of_lines, max_rate, min_rate);
+
+CREATE INDEX IF NOT EXISTS idx_wits_history_partner
+    ON wits_tariffs (partner_code, "year", id)
+    INCLUDE (reporter_iso, product_code, simple_average, sum_of_rates, total_no_of_lines, max_rate, min_rate);
+
+CREATE INDEX IF NOT EXISTS idx_wits_history_year
+    ON wits_tariffs ("year", id);
+
+-- idx_wits_history_route has the same leading columns, so the old lookup index
+-- only costs writes now.
+DROP INDEX IF EXISTS idx_wits_tariffs_lookup;
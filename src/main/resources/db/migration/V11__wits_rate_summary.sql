@@ -0,0 +1,34 @@
+-- One row per (reporter, partner, product, year) with just what a quote needs.
+-- wits_tariffs can hold several rows per key (one per nomenclature/estimate
+-- code); the summary keeps the lowest id, matching the old findFirst...OrderByIdAsc
+-- lookup. is_latest marks the most recent year of each route/product so the
+-- "latest year" fallback is a single index probe. The importers keep it in step
+-- with wits_tariffs per archive.
+
+CREATE TABLE IF NOT EXISTS wits_rate_summary (
+    reporter_iso    VARCHAR(10)  NOT NULL,
+    partner_code    VARCHAR(10)  NOT NULL,
+    product_code    VARCHAR(20)  NOT NULL,
+    "year"          INTEGER      NOT NULL,
+    simple_average  NUMERIC(12,4),
+    nomen_code      VARCHAR(10)  NOT NULL,
+    est_code        VARCHAR(10),
+    source_file     VARCHAR(255) NOT NULL,
+    is_latest       BOOLEAN      NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (reporter_iso, partner_code, product_code, "year")
+);
+
+CREATE INDEX IF NOT EXISTS idx_wits_rate_summary_latest
+    ON wits_rate_summary (reporter_iso, partner_code, product_code)
+    WHERE is_latest;
+
+INSERT INTO wits_rate_summary (reporter_iso, partner_code, product_code, "year", simple_average,
+                               nomen_code, est_code, source_file, is_latest)
+SELECT reporter_iso, partner_code, product_code, "year", simple_average, nomen_code, est_code, source_file,
+       "year" = max("year") OVER (PARTITION BY reporter_iso, partner_code, product_code)
+FROM (
+    SELECT DISTINCT ON (reporter_iso, partner_code, product_code, "year") *
+    FROM wits_tariffs
+    ORDER BY reporter_iso, partner_code, product_code, "year", id
+) first_rows
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,101 @@
+-- Turns wits_tariffs into a table list-partitioned by reporter_iso, one partition
+-- per reporter (wits_tariffs_r<code>). Imports, re-imports and per-reporter
+-- reloads then only touch one reporter's heap and indexes, and per-reporter
+-- queries are pruned to a single partition.
+--
+-- There is deliberately no DEFAULT partition: new reporters get a partition from
+-- wits_tariffs_ensure_partition() before their first rows arrive, and without a
+-- default partition ATTACH needs no validation scan and DETACH ... CONCURRENTLY
+-- is allowed.
+
+CREATE OR REPLACE FUNCTION wits_tariffs_partition_name(code TEXT) RETURNS TEXT AS $$
+    SELECT 'wits_tariffs_r' || lower(regexp_replace(code, '[^A-Za-z0-9]', '_', 'g'));
+$$ LANGUAGE sql IMMUTABLE;
+
+-- Creates and attaches the partition for a reporter if it does not exist yet.
+-- Creating the table standalone and attaching it only takes SHARE UPDATE
+-- EXCLUSIVE on the parent, so reads and writes to other reporters carry on.
+CREATE OR REPLACE FUNCTION wits_tariffs_ensure_partition(code TEXT) RETURNS VOID AS $$
+DECLARE
+    part TEXT := wits_tariffs_partition_name(code);
+BEGIN
+    IF to_regclass(part) IS NOT NULL THEN
+        RETURN;
+    END IF;
+    -- Importer workers may race for the same new reporter.
+    PERFORM pg_advisory_xact_lock(hashtext('wits_tariffs_partitions'));
+    IF to_regclass(part) IS NOT NULL THEN
+        RETURN;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE wits_tariffs INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', part);
+    EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I CHECK (reporter_iso = %L)', part, part || '_reporter', code);
+    EXECUTE format('ALTER TABLE wits_tariffs ATTACH PARTITION %I FOR VALUES IN (%L)', part, code);
+END;
+$$ LANGUAGE plpgsql;
+
+-- The id sequence has to outlive the old table.
+ALTER SEQUENCE wits_tariffs_id_seq OWNED BY NONE;
+ALTER TABLE wits_tariffs RENAME TO wits_tariffs_unpartitioned;
+
+CREATE TABLE wits_tariffs (
+    id              BIGINT       NOT NULL DEFAULT nextval('wits_tariffs_id_seq'),
+    nomen_code      VARCHAR(10)  NOT NULL,
+    reporter_iso    VARCHAR(10)  NOT NULL,
+    partner_code    VARCHAR(10)  NOT NULL,
+    product_code    VARCHAR(20)  NOT NULL,
+    year            INTEGER      NOT NULL,
+    sum_of_rates    NUMERIC(12,4),
+    min_rate        NUMERIC(12,4),
+    max_rate        NUMERIC(12,4),
+    simple_average  NUMERIC(12,4),
+    total_no_of_lines INTEGER,
+    nbr_pref_lines    INTEGER,
+    nbr_mfn_lines     INTEGER,
+    nbr_na_lines      INTEGER,
+    est_code        VARCHAR(10),
+    source_file     VARCHAR(255) NOT NULL,
+    inserted_at     TIMESTAMPTZ  NOT NULL DEFAULT NOW()
+) PARTITION BY LIST (reporter_iso);
+
+ALTER SEQUENCE wits_tariffs_id_seq OWNED BY wits_tariffs.id;
+
+SELECT wits_tariffs_ensure_partition(reporter_iso)
+FROM (SELECT DISTINCT reporter_iso FROM wits_tariffs_unpartitioned) reporters;
+
+-- Rows are copied before any index exists; the indexes below are then built once per partition.
+INSERT INTO wits_tariffs
+SELECT id, nomen_code, reporter_iso, partner_code, product_code, year, sum_of_rates, min_rate, max_rate,
+       simple_average, total_no_of_lines, nbr_pref_lines, nbr_mfn_lines, nbr_na_lines, est_code,
+       source_file, inserted_at
+FROM wits_tariffs_unpartitioned;
+
+DROP TABLE wits_tariffs_unpartitioned;
+
+-- Unique constraints on a partitioned table must include the partition key;
+-- the combo key already does, the primary key gains reporter_iso.
+ALTER TABLE wits_tariffs ADD PRIMARY KEY (id, reporter_iso);
+
+CREATE UNIQUE INDEX uq_wits_tariffs_combo
+    ON wits_tariffs (nomen_code, reporter_iso, partner_code, product_code, year, est_code);
+
+-- Same covering indexes as V10, now created per partition.
+CREATE INDEX idx_wits_history_route
+    ON wits_tariffs (reporter_iso, partner_code, product_code, "year", id)
+    INCLUDE (simple_average, sum_of_rates, total_no_of_lines, max_rate, min_rate);
+
+CREATE INDEX idx_wits_history_reporter_partner
+    ON wits_tariffs (reporter_iso, partner_code, "year", id)
+    INCLUDE (product_code, simple_average, sum_of_rates, total_no_of_lines, max_rate, min_rate);
+
+CREATE INDEX idx_wits_history_product
+    ON wits_tariffs (product_code, "year", id)
+    INCLUDE (reporter_iso, partner_code, simple_average, sum_of_rates, total_no_of_lines, max_rate, min_rate);
+
+CREATE INDEX idx_wits_history_partner
+    ON wits_tariffs (partner_code, "year", id)
+    INCLUDE (reporter_iso, product_code, simple_average, sum_of_rates, total_no_of_lines, max_rate, min_rate);
+
+CREATE INDEX idx_wits_history_year
+    ON wits_tariffs ("year", id);
+
+ANALYZE wits_tariffs;
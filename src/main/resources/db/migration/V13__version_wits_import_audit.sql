@@ -0,0 +1,23 @@
+-- finished_at is the importing transaction's start time, and parallel archives
+-- commit in any order, so it cannot tell the app which archives it has seen.
+-- change_seq is drawn while holding a transaction-level advisory lock that the
+-- importers take right before marking an archive, so values commit in order.
+CREATE SEQUENCE IF NOT EXISTS wits_import_audit_change_seq;
+
+ALTER TABLE wits_import_audit ADD COLUMN IF NOT EXISTS change_seq BIGINT;
+
+UPDATE wits_import_audit a
+SET change_seq = o.seq
+FROM (
+    SELECT source_file, nextval('wits_import_audit_change_seq') AS seq
+    FROM (
+        SELECT source_file FROM wits_import_audit ORDER BY finished_at, source_file
+    ) ordered
+) o
+WHERE a.source_file = o.source_file
+  AND a.change_seq IS NULL;
+
+ALTER TABLE wits_import_audit ALTER COLUMN change_seq SET DEFAULT nextval('wits_import_audit_change_seq');
+ALTER TABLE wits_import_audit ALTER COLUMN change_seq SET NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_wits_import_audit_change_seq ON wits_import_audit (change_seq);
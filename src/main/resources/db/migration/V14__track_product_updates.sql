@@ -0,0 +1,16 @@
+-- Product lists are served with an ETag built from the row count and the latest
+-- updated_at, read at request time so every instance sees the same value. The
+-- trigger keeps updated_at honest for writes that bypass the application.
+ALTER TABLE products ADD COLUMN IF NOT EXISTS updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW();
+
+CREATE OR REPLACE FUNCTION products_touch_updated_at() RETURNS trigger AS $$
+BEGIN
+    NEW.updated_at := clock_timestamp();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS trg_products_touch_updated_at ON products;
+CREATE TRIGGER trg_products_touch_updated_at
+    BEFORE INSERT OR UPDATE ON products
+    FOR EACH ROW EXECUTE FUNCTION products_touch_updated_at();
@@ -0,0 +1,4 @@
+CREATE TABLE IF NOT EXISTS wits_import_audit (
+    source_file TEXT PRIMARY KEY,
+    finished_at TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
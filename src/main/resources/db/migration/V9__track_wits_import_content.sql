@@ -0,0 +1,4 @@
+ALTER TABLE wits_import_audit ADD COLUMN IF NOT EXISTS content_sha256 VARCHAR(64);
+ALTER TABLE wits_import_audit ADD COLUMN IF NOT EXISTS row_count BIGINT;
+ALTER TABLE wits_import_audit ADD COLUMN IF NOT EXISTS changed_rows BIGINT;
+ALTER TABLE wits_import_audit ADD COLUMN IF NOT EXISTS reporters TEXT;
@@ -0,0 +1,27 @@
+package com.example.tariffkey;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Stand-ins for the PostgreSQL functions the repositories call, registered as H2
+ * aliases in data.sql. H2 has no advisory locks, so every key maps to one row lock
+ * held until the caller's transaction ends: coarser, but with the same scope.
+ */
+public final class H2PostgresFunctions {
+
+    private H2PostgresFunctions() {
+    }
+
+    public static int hashtext(String value) {
+        return value.hashCode();
+    }
+
+    public static void advisoryXactLock(Connection connection, int key) throws SQLException {
+        try (PreparedStatement lock = connection.prepareStatement(
+                "SELECT id FROM advisory_locks WHERE id = 1 FOR UPDATE")) {
+            lock.executeQuery().close();
+        }
+    }
+}
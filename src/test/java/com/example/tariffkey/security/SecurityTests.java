@@ -1,19 +1,25 @@
 package com.example.tariffkey.security;
 
+import com.example.tariffkey.service.JwtService;
+import com.example.tariffkey.service.UserAccessCache;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.httpBasic;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
+@AutoConfigureObservability(tracing = false)
 @org.springframework.test.context.ActiveProfiles("test")
 class SecurityTests {
 
@@ -23,6 +29,12 @@ class SecurityTests {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private UserAccessCache userAccessCache;
+
     // Test 1: Register endpoint should be public
     @Test
     void registerShouldBePublic() throws Exception {
@@ -73,6 +85,64 @@ class SecurityTests {
                 .andExpect(status().isOk());
     }
 
+    // Test 6: Bearer token is authorised from its claims and the role cache
+    @Test
+    void bearerTokenAuthenticatesWithoutLoadingTheUser() throws Exception {
+        mockMvc.perform(get("/api/tariff/all").header("Authorization", "Bearer " + tokenFor("user", "USER")))
+                .andExpect(status().isOk());
+    }
+
+    // Test 7: Revoked tokens stop working before they expire
+    @Test
+    void revokedTokenIsRejected() throws Exception {
+        // No other test authenticates admin with a bearer token, so revoking it is safe here.
+        String token = tokenFor("admin", "ADMIN");
+
+        mockMvc.perform(get("/api/tariff/all").header("Authorization", "Bearer " + token))
+                .andExpect(status().isOk());
+
+        userAccessCache.revoke("admin");
+
+        mockMvc.perform(get("/api/tariff/all").header("Authorization", "Bearer " + token))
+                .andExpect(status().isForbidden());
+    }
+
+    // Test 8: A valid signature is not enough when the user does not exist
+    @Test
+    void tokenForUnknownUserIsRejected() throws Exception {
+        mockMvc.perform(get("/api/tariff/all").header("Authorization", "Bearer " + tokenFor("ghost", "ADMIN")))
+                .andExpect(status().isForbidden());
+    }
+
+    // Test 9: Regular users can compare origins, not only admins
+    @Test
+    void userTokenCanCompareOrigins() throws Exception {
+        mockMvc.perform(post("/api/tariff/compare")
+                        .header("Authorization", "Bearer " + tokenFor("user", "USER"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"destCountry\":\"702\",\"hsCode\":\"847130\",\"quantity\":1,\"origins\":[\"840\"]}"))
+                .andExpect(status().isOk());
+    }
+
+    // Test 10: Metrics need the scrape credential; health stays public for probes
+    @Test
+    void prometheusRequiresScrapeCredential() throws Exception {
+        mockMvc.perform(get("/actuator/health"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").header("Authorization", "Bearer " + tokenFor("admin", "ADMIN")))
+                .andExpect(status().is4xxClientError());
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("prometheus", "wrong")))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").with(httpBasic("prometheus", "test-scrape")))
+                .andExpect(status().isOk());
+    }
+
+    private String tokenFor(String username, String role) {
+        return jwtService.generateToken(User.withUsername(username).password("n/a").authorities(role).build());
+    }
+
     // Helper DTOs to simulate JSON body
     static class RegisterRequest {
         public String username;
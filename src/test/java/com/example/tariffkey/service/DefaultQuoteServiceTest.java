@@ -1,17 +1,26 @@
 package com.example.tariffkey.service;
 
+import com.example.tariffkey.exception.TariffNotFoundException;
 import com.example.tariffkey.model.FeeSchedule;
 import com.example.tariffkey.model.Product;
 import com.example.tariffkey.model.Tariff;
 import com.example.tariffkey.model.TariffApiRequest;
 import com.example.tariffkey.model.TariffApiResponse;
+import com.example.tariffkey.model.TariffBatchRequest;
+import com.example.tariffkey.model.TariffBatchResponse;
+import com.example.tariffkey.model.TariffCompareRequest;
+import com.example.tariffkey.model.TariffCompareResponse;
 import com.example.tariffkey.model.TariffRequest;
 import com.example.tariffkey.model.TariffResponse;
-import com.example.tariffkey.model.WitsTariff;
+import com.example.tariffkey.model.WitsRateSummary;
+import com.example.tariffkey.model.WitsRateSummaryId;
 import com.example.tariffkey.repository.FeeScheduleRepository;
 import com.example.tariffkey.repository.ProductRepository;
 import com.example.tariffkey.repository.TariffRepository;
-import com.example.tariffkey.repository.WitsTariffRepository;
+import com.example.tariffkey.repository.WitsRateSummaryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,8 +30,23 @@ import org.springframework.test.context.ActiveProfiles;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @SpringBootTest
 @ActiveProfiles("test")
@@ -41,14 +65,29 @@ class DefaultQuoteServiceTest {
     private TariffRepository tariffRepository;
 
     @Autowired
-    private WitsTariffRepository witsTariffRepository;
+    private WitsRateSummaryRepository witsRateSummaryRepository;
+
+    @Autowired
+    private WitsRateIndex witsRateIndex;
+
+    @Autowired
+    private FeeScheduleService feeScheduleService;
+
+    @Autowired
+    private AdminTariffIndex adminTariffIndex;
+
+    @Autowired
+    private LookupService lookupService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
 
     @BeforeEach
     void seedData() {
         productRepository.deleteAll();
         feeScheduleRepository.deleteAll();
         tariffRepository.deleteAll();
-        witsTariffRepository.deleteAll();
+        witsRateSummaryRepository.deleteAll();
 
         productRepository.save(Product.builder()
                 .code("electronics")
@@ -62,6 +101,8 @@ class DefaultQuoteServiceTest {
                 FeeSchedule.builder().code("processing").amount(BigDecimal.valueOf(5)).build(),
                 FeeSchedule.builder().code("others").amount(BigDecimal.valueOf(2)).build()
         ));
+        feeScheduleService.refresh();
+        adminTariffIndex.reload();
     }
 
     @Test
@@ -75,6 +116,7 @@ class DefaultQuoteServiceTest {
                 .validTo(LocalDate.of(2023, 12, 31))
                 .label("Admin tariff 2023")
                 .build());
+        adminTariffIndex.reload();
 
         TariffApiRequest request = TariffApiRequest.builder()
                 .originCountry("840")
@@ -111,6 +153,7 @@ class DefaultQuoteServiceTest {
                 .validTo(LocalDate.of(2024, 12, 31))
                 .label("Upcoming 2024")
                 .build());
+        adminTariffIndex.reload();
 
         TariffApiRequest request = TariffApiRequest.builder()
                 .originCountry("840")
@@ -131,15 +174,13 @@ class DefaultQuoteServiceTest {
 
     @Test
     void fetchQuoteFallsBackToWitsDatasetWhenNoManualTariff() {
-        witsTariffRepository.save(WitsTariff.builder()
+        witsRateSummaryRepository.save(WitsRateSummary.builder()
+                .id(new WitsRateSummaryId("840", "702", "847130", 2021))
                 .nomenCode("H0")
-                .reporterIso("840")
-                .partnerCode("702")
-                .productCode("847130")
-                .year(2021)
                 .simpleAverage(BigDecimal.valueOf(7.5))
                 .sourceFile("test.csv")
                 .build());
+        witsRateIndex.rebuild();
 
         TariffApiRequest request = TariffApiRequest.builder()
                 .originCountry("840")
@@ -154,6 +195,393 @@ class DefaultQuoteServiceTest {
         assertThat(response.getYear()).isEqualTo(2021);
         assertThat(response.getNomenclature()).isEqualTo("H0");
     }
+
+    @Test
+    void rateLookupsAreTimedBySource() {
+        witsRateSummaryRepository.save(WitsRateSummary.builder()
+                .id(new WitsRateSummaryId("840", "702", "847130", 2021))
+                .nomenCode("H0")
+                .simpleAverage(BigDecimal.valueOf(7.5))
+                .sourceFile("test.csv")
+                .build());
+        witsRateIndex.rebuild();
+        long dataset = rateCount("dataset");
+        long notFound = rateCount("not_found");
+
+        defaultQuoteService.fetchQuote(TariffApiRequest.builder()
+                .originCountry("840").destCountry("702").hs6("847130").year("2021").build());
+        assertThatThrownBy(() -> defaultQuoteService.fetchQuote(TariffApiRequest.builder()
+                .originCountry("840").destCountry("999").hs6("847130").year("2021").build()))
+                .isInstanceOf(TariffNotFoundException.class);
+
+        assertThat(rateCount("dataset")).isEqualTo(dataset + 1);
+        assertThat(rateCount("not_found")).isEqualTo(notFound + 1);
+    }
+
+    @Test
+    void concurrentIdenticalSummaryReadsShareOneQuery() throws Exception {
+        // No rate index, so rates come from the summary repository, which holds the first
+        // read open until every other caller has joined it.
+        WitsRateSummaryRepository slowRepository = mock(WitsRateSummaryRepository.class);
+        WitsRateIndex noIndex = mock(WitsRateIndex.class);
+        CountDownLatch leaderQuerying = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(slowRepository.findById(any())).thenAnswer(invocation -> {
+            leaderQuerying.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return Optional.of(WitsRateSummary.builder()
+                    .id(new WitsRateSummaryId("840", "702", "847130", 2021))
+                    .nomenCode("H0")
+                    .simpleAverage(BigDecimal.valueOf(7.5))
+                    .sourceFile("test.csv")
+                    .build());
+        });
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DefaultQuoteService service = new DefaultQuoteService(productRepository, feeScheduleService,
+                adminTariffIndex, slowRepository, noIndex, lookupService, registry, 100);
+        TariffApiRequest request = TariffApiRequest.builder()
+                .originCountry("840").destCountry("702").hs6("847130").year("2021").build();
+
+        ExecutorService callers = Executors.newFixedThreadPool(5);
+        try {
+            Future<TariffApiResponse> leader = callers.submit(() -> service.fetchQuote(request));
+            assertThat(leaderQuerying.await(10, TimeUnit.SECONDS)).isTrue();
+            List<Future<TariffApiResponse>> followers = List.of(
+                    callers.submit(() -> service.fetchQuote(request)),
+                    callers.submit(() -> service.fetchQuote(request)),
+                    callers.submit(() -> service.fetchQuote(request)),
+                    callers.submit(() -> service.fetchQuote(request)));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (coalescedCount(registry, "840|702|847130") < 4 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            TariffApiResponse shared = leader.get(10, TimeUnit.SECONDS);
+            for (Future<TariffApiResponse> follower : followers) {
+                assertThat(follower.get(10, TimeUnit.SECONDS)).isSameAs(shared);
+            }
+            assertThat(shared.getTariffRate()).isEqualTo(0.075);
+        } finally {
+            release.countDown();
+            callers.shutdownNow();
+        }
+
+        verify(slowRepository, times(1)).findById(any());
+        assertThat(registry.get("tariffkey.quote.summary.reads").counter().count()).isEqualTo(1);
+        assertThat(coalescedCount(registry, "840|702|847130")).isEqualTo(4);
+
+        // Finished lookups are not cached; the next caller queries again.
+        service.fetchQuote(request);
+        verify(slowRepository, times(2)).findById(any());
+    }
+
+    @Test
+    void fetchQuoteFallsBackToLatestDatasetYearFromIndex() {
+        witsRateSummaryRepository.saveAll(List.of(
+                WitsRateSummary.builder()
+                        .id(new WitsRateSummaryId("840", "702", "847130", 2019))
+                        .nomenCode("H0")
+                        .simpleAverage(BigDecimal.valueOf(4.25))
+                        .sourceFile("2019.zip")
+                        .build(),
+                WitsRateSummary.builder()
+                        .id(new WitsRateSummaryId("840", "702", "847130", 2022))
+                        .nomenCode("H5")
+                        .simpleAverage(BigDecimal.valueOf(3.5))
+                        .estCode("A")
+                        .sourceFile("2022.zip")
+                        .build(),
+                WitsRateSummary.builder()
+                        .id(new WitsRateSummaryId("840", "703", "847130", 2023))
+                        .nomenCode("H5")
+                        .simpleAverage(BigDecimal.valueOf(9.0))
+                        .sourceFile("other.zip")
+                        .build()));
+        witsRateIndex.rebuild();
+
+        TariffApiRequest request = TariffApiRequest.builder()
+                .originCountry("840")
+                .destCountry("702")
+                .hs6("847130")
+                .year("2030")
+                .build();
+
+        TariffApiResponse response = defaultQuoteService.fetchQuote(request);
+
+        assertThat(response.getTariffRate()).isEqualTo(0.035);
+        assertThat(response.getYear()).isEqualTo(2022);
+        assertThat(response.getNomenclature()).isEqualTo("H5");
+        assertThat(response.getTariffTypes()).containsExactly("A");
+        assertThat(response.getUrl()).isEqualTo("wits_tariffs:2022.zip");
+    }
+
+    @Test
+    void reporterRefreshOnlyRereadsChangedReporters() {
+        witsRateSummaryRepository.saveAll(List.of(
+                witsRow("840", "702", 2021, 7.5),
+                witsRow("702", "840", 2021, 2.0)));
+        witsRateIndex.rebuild();
+
+        witsRateSummaryRepository.deleteAll();
+        witsRateSummaryRepository.saveAll(List.of(
+                witsRow("840", "702", 2021, 5.0),
+                witsRow("702", "840", 2021, 9.0)));
+        witsRateIndex.refreshReporters(Set.of("840"));
+
+        assertThat(defaultQuoteService.fetchQuote(witsRequest("840", "702")).getTariffRate()).isEqualTo(0.05);
+        // 702 was not named, so the index keeps serving what it loaded before
+        assertThat(defaultQuoteService.fetchQuote(witsRequest("702", "840")).getTariffRate()).isEqualTo(0.02);
+    }
+
+    @Test
+    void calculateBatchPricesEachLineAndTotalsTheOrder() {
+        tariffRepository.save(Tariff.builder()
+                .originCountry("840")
+                .destinationCountry("702")
+                .product("847130")
+                .rate(0.1)
+                .validFrom(LocalDate.of(2024, 1, 1))
+                .validTo(LocalDate.of(2024, 12, 31))
+                .label("Admin 2024")
+                .build());
+        adminTariffIndex.reload();
+
+        TariffRequest first = batchLine("electronics", 2);
+        first.setHandling(true);
+        TariffRequest second = batchLine("electronics", 1);
+        TariffRequest unknownRoute = batchLine("electronics", 1);
+        unknownRoute.setToCountry("999");
+
+        TariffBatchRequest batch = new TariffBatchRequest();
+        batch.setLines(List.of(first, second, unknownRoute));
+
+        TariffBatchResponse response = defaultQuoteService.calculateBatch(batch);
+
+        assertThat(response.getLines()).hasSize(3);
+        assertThat(response.getLines().get(0).getTotalPrice()).isEqualTo(230.0);
+        assertThat(response.getLines().get(1).getTotalPrice()).isEqualTo(110.0);
+        assertThat(response.getLines().get(1).getAdminTariffId()).isNotNull();
+        assertThat(response.getLines().get(2).getTotalPrice()).isNull();
+        assertThat(response.getLines().get(2).getMessage()).contains("No tariff data");
+        assertThat(response.getPricedLines()).isEqualTo(2);
+        assertThat(response.getOrderTotal()).isEqualTo(340.0);
+    }
+
+    @Test
+    void calculateQuoteSplitsWindowAcrossAdminRangesAndDatasetYears() {
+        witsRateSummaryRepository.saveAll(List.of(
+                witsRow("840", "702", 2023, 5.0),
+                witsRow("840", "702", 2024, 3.0)));
+        witsRateIndex.rebuild();
+        tariffRepository.save(Tariff.builder()
+                .originCountry("840")
+                .destinationCountry("702")
+                .product("847130")
+                .rate(0.01)
+                .validFrom(LocalDate.of(2024, 1, 1))
+                .validTo(LocalDate.of(2024, 3, 31))
+                .label("Admin Q1 2024")
+                .build());
+        adminTariffIndex.reload();
+
+        // 366 days at one unit per day: 184 days of 2023, 91 admin days, 91 days of 2024.
+        TariffRequest request = batchLine("electronics", 366);
+        request.setCustomBasePrice(1.0);
+        request.setCalculationFrom("2023-07-01T00:00:00Z");
+        request.setCalculationTo("2024-06-30T00:00:00Z");
+
+        TariffResponse response = defaultQuoteService.calculateQuote(request);
+
+        assertThat(response.getSegments())
+                .extracting(TariffResponse.Segment::getFrom, TariffResponse.Segment::getTo,
+                        TariffResponse.Segment::getRatePercent)
+                .containsExactly(
+                        tuple("2023-07-01", "2023-12-31", 5.0),
+                        tuple("2024-01-01", "2024-03-31", 1.0),
+                        tuple("2024-04-01", "2024-06-30", 3.0));
+        assertThat(response.getSegments().get(0).getQuantityPortion()).isCloseTo(184.0, within(1e-9));
+        assertThat(response.getSegments().get(1).getSource()).startsWith("admin:");
+        assertThat(response.getTariffAmount()).isCloseTo(12.84, within(1e-9));
+        assertThat(response.getTotalPrice()).isCloseTo(366 + 12.84, within(1e-9));
+        assertThat(response.getTariffRate()).isCloseTo(12.84 / 366 * 100, within(1e-9));
+    }
+
+    @Test
+    void calculateQuoteDoesNotStretchPartialAdminRangeOverUncoveredDays() {
+        witsRateSummaryRepository.save(witsRow("840", "702", 2022, 5.0));
+        witsRateIndex.rebuild();
+        tariffRepository.save(Tariff.builder()
+                .originCountry("840")
+                .destinationCountry("702")
+                .product("847130")
+                .rate(0.01)
+                .validFrom(LocalDate.of(2024, 1, 1))
+                .validTo(LocalDate.of(2024, 3, 31))
+                .label("Admin Q1 2024")
+                .build());
+        adminTariffIndex.reload();
+
+        // 182 days at one unit per day: 91 admin days, then 91 days with no 2024 dataset row.
+        TariffRequest request = batchLine("electronics", 182);
+        request.setCustomBasePrice(1.0);
+        request.setCalculationFrom("2024-01-01T00:00:00Z");
+        request.setCalculationTo("2024-06-30T00:00:00Z");
+
+        TariffResponse response = defaultQuoteService.calculateQuote(request);
+
+        assertThat(response.getSegments())
+                .extracting(TariffResponse.Segment::getTo, TariffResponse.Segment::getRatePercent,
+                        TariffResponse.Segment::getLabel, TariffResponse.Segment::isUnpriced)
+                .containsExactly(
+                        tuple("2024-03-31", 1.0, "Admin Q1 2024", false),
+                        tuple("2024-06-30", 5.0, "Dataset tariff rate 2022", false));
+        assertThat(response.getSegments().get(1).getSource()).isEqualTo("H5");
+        assertThat(response.getTariffAmount()).isCloseTo(0.91 + 4.55, within(1e-9));
+        assertThat(response.getMessage()).isNull();
+
+        // Without any dataset rate the uncovered days are left unpriced, not billed at the admin rate.
+        witsRateSummaryRepository.deleteAll();
+        witsRateIndex.rebuild();
+
+        TariffResponse unpriced = defaultQuoteService.calculateQuote(request);
+
+        assertThat(unpriced.getSegments())
+                .extracting(TariffResponse.Segment::getTo, TariffResponse.Segment::getRatePercent,
+                        TariffResponse.Segment::isUnpriced)
+                .containsExactly(tuple("2024-03-31", 1.0, false), tuple("2024-06-30", 0.0, true));
+        assertThat(unpriced.getTariffAmount()).isCloseTo(0.91, within(1e-9));
+        assertThat(unpriced.getTariffRate()).isCloseTo(1.0, within(1e-9));
+        assertThat(unpriced.getMessage()).isNotNull();
+    }
+
+    @Test
+    void calculateQuoteDescribesDatasetSegmentsWhenLatestAdminTariffMissesWindow() {
+        witsRateSummaryRepository.saveAll(List.of(
+                witsRow("840", "702", 2023, 5.0),
+                witsRow("840", "702", 2024, 3.0)));
+        witsRateIndex.rebuild();
+        tariffRepository.save(Tariff.builder()
+                .originCountry("840")
+                .destinationCountry("702")
+                .product("847130")
+                .rate(0.2)
+                .validFrom(LocalDate.of(2021, 1, 1))
+                .validTo(LocalDate.of(2021, 12, 31))
+                .label("Admin 2021")
+                .notes("Expired")
+                .build());
+        adminTariffIndex.reload();
+
+        TariffRequest request = batchLine("electronics", 1);
+        request.setCustomBasePrice(0.0);
+        request.setCalculationFrom("2023-07-01T00:00:00Z");
+        request.setCalculationTo("2024-06-30T00:00:00Z");
+
+        TariffResponse response = defaultQuoteService.calculateQuote(request);
+
+        // 184 days at 5% and 182 days at 3%, with nothing to divide an amount by.
+        assertThat(response.getSegments()).hasSize(2);
+        assertThat(response.getTariffAmount()).isZero();
+        assertThat(response.getTariffRate()).isCloseTo((5.0 * 184 + 3.0 * 182) / 366, within(1e-9));
+        assertThat(response.getLabel()).isEqualTo("Dataset tariff rate 2023");
+        assertThat(response.getSource()).isEqualTo("H5");
+        assertThat(response.getAdminTariffId()).isNull();
+        assertThat(response.getNotes()).isNull();
+        assertThat(response.getValidFrom()).isEqualTo("2023-07-01");
+        assertThat(response.getValidTo()).isEqualTo("2024-06-30");
+    }
+
+    @Test
+    void compareOriginsRanksDatasetAndAdminOriginsByRate() {
+        witsRateSummaryRepository.saveAll(List.of(
+                witsRow("840", "702", 2021, 7.5),
+                witsRow("156", "702", 2021, 2.0)));
+        witsRateIndex.rebuild();
+        lookupService.rebuild();
+        tariffRepository.save(Tariff.builder()
+                .originCountry("410")
+                .destinationCountry("702")
+                .product("847130")
+                .rate(0.01)
+                .validFrom(LocalDate.of(2024, 1, 1))
+                .validTo(LocalDate.of(2024, 12, 31))
+                .label("Admin 2024")
+                .build());
+        adminTariffIndex.reload();
+
+        TariffCompareRequest request = new TariffCompareRequest();
+        request.setDestCountry("702");
+        request.setHsCode("847130");
+        request.setQuantity(2);
+        request.setCustomBasePrice(100.0);
+        request.setCalculationFrom("2024-03-01T00:00:00Z");
+        request.setCalculationTo("2024-03-31T00:00:00Z");
+
+        TariffCompareResponse response = defaultQuoteService.compareOrigins(request);
+
+        assertThat(response.getOrigins())
+                .extracting(TariffCompareResponse.OriginQuote::getOriginCountry)
+                .containsExactly("410", "156", "840");
+        assertThat(response.getOrigins())
+                .extracting(TariffCompareResponse.OriginQuote::getRank)
+                .containsExactly(1, 2, 3);
+        assertThat(response.getOrigins().get(0).getAdminTariffId()).isNotNull();
+        assertThat(response.getOrigins().get(0).getTotalPrice()).isEqualTo(202.0);
+        assertThat(response.getOrigins().get(2).getTariffRate()).isEqualTo(7.5);
+
+        request.setOrigins(List.of("999", "840"));
+        TariffCompareResponse explicit = defaultQuoteService.compareOrigins(request);
+
+        assertThat(explicit.getOrigins())
+                .extracting(TariffCompareResponse.OriginQuote::getOriginCountry)
+                .containsExactly("840", "999");
+        assertThat(explicit.getOrigins().get(1).getRank()).isNull();
+        assertThat(explicit.getOrigins().get(1).getMessage()).contains("No tariff data");
+        assertThat(productRepository.findByHsCode("847130")).isPresent();
+        assertThat(productRepository.count()).isEqualTo(1);
+    }
+
+    private TariffRequest batchLine(String product, int quantity) {
+        TariffRequest request = new TariffRequest();
+        request.setFromCountry("840");
+        request.setToCountry("702");
+        request.setProduct(product);
+        request.setQuantity(quantity);
+        request.setCustomBasePrice(100.0);
+        request.setCalculationFrom("2024-03-01T00:00:00Z");
+        request.setCalculationTo("2024-03-31T00:00:00Z");
+        return request;
+    }
+
+    private WitsRateSummary witsRow(String reporter, String partner, int year, double rate) {
+        return WitsRateSummary.builder()
+                .id(new WitsRateSummaryId(reporter, partner, "847130", year))
+                .nomenCode("H5")
+                .simpleAverage(BigDecimal.valueOf(rate))
+                .sourceFile(reporter + ".zip")
+                .build();
+    }
+
+    private TariffApiRequest witsRequest(String origin, String destination) {
+        return TariffApiRequest.builder()
+                .originCountry(origin)
+                .destCountry(destination)
+                .hs6("847130")
+                .year("2021")
+                .build();
+    }
+
+    private long rateCount(String source) {
+        return meterRegistry.get("tariffkey.quote.rate").tag("source", source).timer().count();
+    }
+
+    private static double coalescedCount(MeterRegistry registry, String route) {
+        // Polled while followers are still registering the counter, so it may not exist yet.
+        Counter counter = registry.find("tariffkey.quote.summary.coalesced").tag("route", route).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
 // commented out as no more manaual cache, all is via database queries
     // @Test
 //     void calculateQuoteUsesDatasetTariffWhenManualCacheMissing() {
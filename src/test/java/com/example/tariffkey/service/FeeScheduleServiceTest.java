@@ -0,0 +1,63 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.FeeSchedule;
+import com.example.tariffkey.repository.FeeScheduleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class FeeScheduleServiceTest {
+
+    @Autowired
+    private FeeScheduleService feeScheduleService;
+
+    @Autowired
+    private FeeScheduleRepository feeScheduleRepository;
+
+    @BeforeEach
+    void seedFees() {
+        feeScheduleRepository.deleteAll();
+        feeScheduleRepository.saveAll(List.of(
+                FeeSchedule.builder().code("handling").amount(BigDecimal.valueOf(50)).build(),
+                FeeSchedule.builder().code("inspection").amount(BigDecimal.valueOf(80)).build()
+        ));
+        feeScheduleService.refresh();
+    }
+
+    @Test
+    void updateFeeIsVisibleWithoutReload() {
+        assertThat(feeScheduleService.amount("handling")).isEqualTo(50.0);
+
+        feeScheduleService.updateFee("handling", BigDecimal.valueOf(55.5));
+
+        assertThat(feeScheduleService.amount("handling")).isEqualTo(55.5);
+        assertThat(feeScheduleRepository.findById("handling"))
+                .get()
+                .extracting(fee -> fee.getAmount().doubleValue())
+                .isEqualTo(55.5);
+    }
+
+    @Test
+    void unknownFeeCountsAsMissAndCostsNothing() {
+        long missesBefore = feeScheduleService.stats().misses();
+
+        assertThat(feeScheduleService.amount("customs-broker")).isZero();
+        assertThat(feeScheduleService.stats().misses()).isEqualTo(missesBefore + 1);
+    }
+
+    @Test
+    void updateFeeRejectsNegativeAmounts() {
+        assertThatThrownBy(() -> feeScheduleService.updateFee("handling", BigDecimal.valueOf(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.LookupOption;
+import com.example.tariffkey.model.Product;
+import com.example.tariffkey.model.WitsCountryMetadata;
+import com.example.tariffkey.model.WitsProductMetadata;
+import com.example.tariffkey.model.WitsProductMetadataId;
+import com.example.tariffkey.model.WitsRateSummary;
+import com.example.tariffkey.model.WitsRateSummaryId;
+import com.example.tariffkey.repository.ProductRepository;
+import com.example.tariffkey.repository.WitsCountryMetadataRepository;
+import com.example.tariffkey.repository.WitsProductMetadataRepository;
+import com.example.tariffkey.repository.WitsRateSummaryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LookupServiceTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private LookupService lookupService;
+
+    @Autowired
+    private WitsRateSummaryRepository witsRateSummaryRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private WitsCountryMetadataRepository countryMetadataRepository;
+
+    @Autowired
+    private WitsProductMetadataRepository productMetadataRepository;
+
+    @BeforeEach
+    void seedDataset() {
+        witsRateSummaryRepository.deleteAll();
+        countryMetadataRepository.saveAll(List.of(
+                WitsCountryMetadata.builder().countryCode("840").iso3("USA").countryName("United States").build(),
+                WitsCountryMetadata.builder().countryCode("702").iso3("SGP").countryName("Singapore").build()));
+        productMetadataRepository.save(WitsProductMetadata.builder()
+                .id(new WitsProductMetadataId("H5", "847130"))
+                .description("Portable computers")
+                .build());
+        witsRateSummaryRepository.saveAll(List.of(
+                row("H5", "840", "702", "847130", 2021),
+                row("H5", "840", "702", "847130", 2022),
+                row("H0", "840", "702", "847130", 2020),
+                row("H5", "840", "702", "950300", 2022),
+                row("H5", "702", "840", "847130", 2022)));
+        lookupService.rebuild();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        witsRateSummaryRepository.deleteAll();
+        lookupService.rebuild();
+    }
+
+    @Test
+    void servesCascadeFromPrebuiltGraph() {
+        assertThat(lookupService.getReporters().reporters())
+                .extracting(LookupOption::code)
+                .containsExactly("702", "840");
+        assertThat(lookupService.getPartnersForReporter("840"))
+                .extracting(LookupOption::label)
+                .containsExactly("Singapore (SGP · 702)");
+
+        List<LookupOption> products = lookupService.getProductsForRoute("840", "702");
+        assertThat(products).extracting(LookupOption::hsCode).containsExactly("847130", "950300");
+        assertThat(products.get(0).label()).startsWith("Portable computers (HS 847130)");
+    }
+
+    @Test
+    void unknownReporterIsRejected() {
+        assertThatThrownBy(() -> lookupService.getPartnersForReporter("999"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown reporter");
+    }
+
+    @Test
+    void currentEtagDoesNotHideUnknownCodes() throws Exception {
+        String partnersTag = mockMvc.perform(get("/api/lookups/reporters/840/partners"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        String productsTag = mockMvc.perform(get("/api/lookups/reporters/840/partners/702/products"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/lookups/reporters/840/partners").header("If-None-Match", partnersTag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/lookups/reporters/999/partners").header("If-None-Match", partnersTag))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/lookups/reporters/840/partners/999/products").header("If-None-Match", productsTag))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void productsVersionMovesOnEveryProductWrite() {
+        String graphVersion = lookupService.currentVersion();
+        String before = lookupService.currentProductsVersion();
+
+        // Inserted behind this instance's back, as another instance would.
+        jdbcTemplate.update("INSERT INTO products (id, code, hs_code, base_price) VALUES (?, ?, ?, ?)",
+                9_000_001L, "version-probe", "847130", 10.0);
+        String afterInsert = lookupService.currentProductsVersion();
+        assertThat(afterInsert).isNotEqualTo(before).startsWith(graphVersion);
+
+        Product product = productRepository.findById(9_000_001L).orElseThrow();
+        product.setBasePrice(12.0);
+        productRepository.saveAndFlush(product);
+        String afterEdit = lookupService.currentProductsVersion();
+        assertThat(afterEdit).isNotEqualTo(afterInsert);
+
+        productRepository.delete(product);
+        assertThat(lookupService.currentProductsVersion()).isNotEqualTo(afterEdit);
+        assertThat(lookupService.currentVersion()).isEqualTo(graphVersion);
+    }
+
+    @Test
+    void reporterRefreshRebuildsOnlyNamedReporters() {
+        witsRateSummaryRepository.saveAll(List.of(
+                row("H5", "840", "703", "847130", 2023),
+                row("H5", "702", "703", "847130", 2023)));
+
+        lookupService.refreshReporters(Set.of("840"));
+
+        assertThat(lookupService.getPartnersForReporter("840"))
+                .extracting(LookupOption::code)
+                .containsExactly("702", "703");
+        assertThat(lookupService.getPartnersForReporter("702"))
+                .extracting(LookupOption::code)
+                .containsExactly("840");
+    }
+
+    @Test
+    void answersReportersForPartnerFromInvertedIndex() {
+        assertThat(lookupService.getReportersForPartner("702"))
+                .extracting(LookupOption::code)
+                .containsExactly("840");
+        assertThat(lookupService.getReportersForPartner("840"))
+                .extracting(LookupOption::code)
+                .containsExactly("702");
+        assertThat(lookupService.getReportersForPartner("156")).isEmpty();
+
+        assertThat(lookupService.getReportersForPartnerProduct("702", "950300"))
+                .extracting(LookupOption::code)
+                .containsExactly("840");
+        assertThat(lookupService.getReportersForPartnerProduct("840", "950300")).isEmpty();
+
+        witsRateSummaryRepository.save(row("H5", "156", "702", "950300", 2023));
+        lookupService.refreshReporters(Set.of("156"));
+
+        assertThat(lookupService.getReportersForPartnerProduct("702", "950300"))
+                .extracting(LookupOption::code)
+                .containsExactlyInAnyOrder("840", "156");
+    }
+
+    private WitsRateSummary row(String nomen, String reporter, String partner, String product, int year) {
+        return WitsRateSummary.builder()
+                .id(new WitsRateSummaryId(reporter, partner, product, year))
+                .nomenCode(nomen)
+                .simpleAverage(BigDecimal.ONE)
+                .sourceFile("AVEPref_" + nomen + "_" + reporter + "_" + year + "_U2.zip")
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.tariffkey.service;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NewsServiceTest {
+
+    private static final String BODY = """
+            {"results": [
+              {"title": "Tariffs rise", "link": "https://example.com/a", "source_id": "wire", "pubDate": "2025-01-01"},
+              {"title": "Trade deal", "link": "https://example.com/b", "source_id": "wire", "pubDate": "2025-01-02"}
+            ]}
+            """;
+
+    private MockWebServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void requestsAreServedFromSnapshotWithoutCallingUpstream() {
+        NewsService newsService = newsService(86_400_000);
+
+        assertThat(newsService.getLatestNews()).isEmpty();
+        assertThat(server.getRequestCount()).isZero();
+    }
+
+    @Test
+    void failedRefreshKeepsServingPreviousArticles() {
+        NewsService newsService = newsService(0);
+        server.enqueue(new MockResponse().setBody(BODY));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        assertThat(newsService.refresh()).isTrue();
+        assertThat(newsService.refresh()).isFalse();
+
+        assertThat(newsService.getLatestNews()).extracting(article -> article.get("title"))
+                .containsExactly("Tariffs rise", "Trade deal");
+    }
+
+    @Test
+    void jdkHttpClientFetchesArticles() {
+        NewsService newsService = new NewsService("test-key", server.url("/api/1/news").toString(), 0, 2_000, "jdk");
+        server.enqueue(new MockResponse().setBody(BODY));
+
+        assertThat(newsService.refresh()).isTrue();
+        assertThat(newsService.getLatestNews()).hasSize(2);
+    }
+
+    @Test
+    void freshSnapshotIsNotRefetched() {
+        NewsService newsService = newsService(86_400_000);
+        server.enqueue(new MockResponse().setBody(BODY));
+
+        newsService.refreshIfStale();
+        newsService.refreshIfStale();
+
+        assertThat(server.getRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    void concurrentRefreshesShareOneUpstreamCall() throws Exception {
+        NewsService newsService = newsService(0);
+        server.enqueue(new MockResponse().setBody(BODY).setBodyDelay(300, TimeUnit.MILLISECONDS));
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return newsService.refresh();
+                }));
+            }
+            start.countDown();
+            long fetched = 0;
+            for (Future<Boolean> result : results) {
+                fetched += result.get(5, TimeUnit.SECONDS) ? 1 : 0;
+            }
+
+            assertThat(fetched).isEqualTo(1);
+            assertThat(server.getRequestCount()).isEqualTo(1);
+            assertThat(newsService.getLatestNews()).hasSize(2);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private NewsService newsService(long ttlMs) {
+        return new NewsService("test-key", server.url("/api/1/news").toString(), ttlMs, 2_000, "simple");
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.LookupOption;
+import com.example.tariffkey.model.WitsProductMetadata;
+import com.example.tariffkey.model.WitsProductMetadataId;
+import com.example.tariffkey.repository.WitsProductMetadataRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductSearchIndexTest {
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private WitsProductMetadataRepository productMetadataRepository;
+
+    @BeforeEach
+    void seedMetadata() {
+        productMetadataRepository.deleteAll();
+        productMetadataRepository.saveAll(List.of(
+                metadata("HS", "847130", "Portable automatic data processing machines"),
+                metadata("H5", "847130", "Laptops and notebook computers"),
+                metadata("HS", "847141", "Other computers with processing unit"),
+                metadata("HS", "8471", "Automatic data processing machines"),
+                metadata("HS", "950300", "Toys; scale models and puzzles"),
+                metadata("H0", "090111", "Coffee, not roasted")));
+        productSearchIndex.refreshIfChanged();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        productMetadataRepository.deleteAll();
+        productSearchIndex.refreshIfChanged();
+    }
+
+    @Test
+    void matchesHsCodePrefixesInCodeOrder() {
+        assertThat(productSearchIndex.search("8471", 20))
+                .extracting(LookupOption::code)
+                .containsExactly("847130", "847141");
+        assertThat(productSearchIndex.search("8471.30", 20))
+                .extracting(LookupOption::label)
+                .containsExactly("Portable automatic data processing machines (HS 847130)");
+        assertThat(productSearchIndex.search("8471", 1)).hasSize(1);
+        assertThat(productSearchIndex.search("12", 20)).isEmpty();
+    }
+
+    @Test
+    void matchesDescriptionWordsAcrossNomenclaturesExactWordsFirst() {
+        // "laptops" only appears in the H5 description but finds the HS6 product.
+        assertThat(productSearchIndex.search("laptop", 20))
+                .extracting(LookupOption::code)
+                .containsExactly("847130");
+        // Every term must match; 847130 gets "computers" from its H5 description.
+        assertThat(productSearchIndex.search("computers processing", 20))
+                .extracting(LookupOption::code)
+                .containsExactly("847130", "847141");
+        assertThat(productSearchIndex.search("process", 20))
+                .extracting(LookupOption::code)
+                .containsExactly("847130", "847141");
+        assertThat(productSearchIndex.search("processing unit", 20))
+                .extracting(LookupOption::code)
+                .containsExactly("847141");
+        assertThat(productSearchIndex.search("toy", 20))
+                .extracting(LookupOption::code)
+                .containsExactly("950300");
+        assertThatThrownBy(() -> productSearchIndex.search("  ", 20))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void ranksExactWordMatchesAheadOfPrefixMatches() {
+        productMetadataRepository.save(metadata("HS", "847110", "Analogue computer"));
+        productSearchIndex.refreshIfChanged();
+
+        assertThat(productSearchIndex.search("computer", 20))
+                .extracting(LookupOption::code)
+                .containsExactly("847110", "847130", "847141");
+    }
+
+    @Test
+    void rebuildsWhenMetadataChanges() {
+        String version = productSearchIndex.version();
+        assertThat(productSearchIndex.refreshIfChanged()).isFalse();
+
+        productMetadataRepository.save(metadata("HS", "950300", "Tricycles, scooters and dolls"));
+        assertThat(productSearchIndex.refreshIfChanged()).isTrue();
+
+        assertThat(productSearchIndex.version()).isNotEqualTo(version);
+        assertThat(productSearchIndex.search("dolls", 20)).extracting(LookupOption::code).containsExactly("950300");
+        assertThat(productSearchIndex.search("toys", 20)).isEmpty();
+        assertThat(productSearchIndex.description("H5", "847130")).contains("Laptops and notebook computers");
+        assertThat(productSearchIndex.description("H0", "847130"))
+                .contains("Portable automatic data processing machines");
+    }
+
+    private static WitsProductMetadata metadata(String nomenCode, String productCode, String description) {
+        return WitsProductMetadata.builder()
+                .id(new WitsProductMetadataId(nomenCode, productCode))
+                .description(description)
+                .build();
+    }
+}
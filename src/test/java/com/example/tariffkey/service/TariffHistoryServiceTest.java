@@ -0,0 +1,285 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.Tariff;
+import com.example.tariffkey.model.TariffHistoryPoint;
+import com.example.tariffkey.model.TariffHistoryRequest;
+import com.example.tariffkey.model.TariffHistoryResponse;
+import com.example.tariffkey.model.TariffHistorySeries;
+import com.example.tariffkey.model.WitsTariff;
+import com.example.tariffkey.repository.TariffRepository;
+import com.example.tariffkey.repository.WitsTariffRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class TariffHistoryServiceTest {
+
+    @Autowired
+    private TariffHistoryService tariffHistoryService;
+
+    @Autowired
+    private TariffHistoryStore tariffHistoryStore;
+
+    @Autowired
+    private WitsTariffRepository witsTariffRepository;
+
+    @Autowired
+    private TariffRepository tariffRepository;
+
+    @Autowired
+    private AdminTariffIndex adminTariffIndex;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void seed() {
+        witsTariffRepository.deleteAll();
+        witsTariffRepository.saveAll(List.of(
+                row("840", "702", "847130", 2019, BigDecimal.valueOf(5)),
+                row("840", "702", "847130", 2020, null),
+                row("840", "702", "847130", 2021, BigDecimal.valueOf(2.5)),
+                row("840", "702", "847130", 2022, BigDecimal.valueOf(3)),
+                row("840", "703", "847130", 2021, BigDecimal.valueOf(9))));
+        tariffHistoryStore.onDatasetChanged(WitsDatasetChangedEvent.full(null));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        witsTariffRepository.deleteAll();
+        tariffHistoryStore.onDatasetChanged(WitsDatasetChangedEvent.full(null));
+    }
+
+    @Test
+    void routeHistorySummarizesYearRange() {
+        TariffHistoryResponse response = tariffHistoryService.getHistory(request("847130", "840", "702"));
+
+        assertThat(response.getData()).extracting(TariffHistoryPoint::getYear).containsExactly(2020, 2021, 2022);
+        // 2020 has no simple average, so sum / lines (4 / 2) is used
+        assertThat(response.getData().get(0).getRatePercent()).isEqualByComparingTo("2");
+        assertThat(response.getSummary().getTotalRecords()).isEqualTo(3);
+        assertThat(response.getSummary().getAverageRate()).isEqualByComparingTo("2.5");
+        assertThat(response.getSummary().getMinRate()).isEqualByComparingTo("2");
+        assertThat(response.getSummary().getMaxRate()).isEqualByComparingTo("3");
+        assertThat(response.getSummary().getDeltaRate()).isEqualByComparingTo("1");
+    }
+
+    @Test
+    void partialFiltersSpanRoutes() {
+        TariffHistoryResponse response = tariffHistoryService.getHistory(request(null, "840", null));
+
+        assertThat(response.getData()).hasSize(4);
+        assertThat(response.getData()).extracting(TariffHistoryPoint::getDestCountry).contains("702", "703");
+    }
+
+    @Test
+    void cachedRoutesAreDroppedWhenTheirReporterChanges() {
+        tariffHistoryService.getHistory(request("847130", "840", "702"));
+        witsTariffRepository.save(row("840", "702", "847130", 2023, BigDecimal.valueOf(1)));
+
+        assertThat(tariffHistoryService.getHistory(request("847130", "840", "702")).getData()).hasSize(3);
+
+        tariffHistoryStore.onDatasetChanged(new WitsDatasetChangedEvent(null, Set.of("840")));
+        TariffHistoryRequest request = request("847130", "840", "702");
+        request.setEndDate(LocalDate.of(2023, 12, 31));
+
+        assertThat(tariffHistoryService.getHistory(request).getData()).hasSize(4);
+    }
+
+    @Test
+    void routeReadAcrossAnInvalidationIsNotCached() {
+        JdbcTemplate slowJdbc = spy(jdbcTemplate);
+        MeterRegistry registry = new SimpleMeterRegistry();
+        TariffHistoryStore store = new TariffHistoryStore(slowJdbc, registry, 10);
+        AtomicBoolean changed = new AtomicBoolean();
+        // The dataset changes while the first read of the route is running.
+        doAnswer(invocation -> {
+            if (changed.compareAndSet(false, true)) {
+                store.onDatasetChanged(new WitsDatasetChangedEvent(2L, Set.of("840")));
+            }
+            return invocation.callRealMethod();
+        }).when(slowJdbc).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        store.find("847130", "840", "702", 1900, 9999, null, Integer.MAX_VALUE);
+        store.find("847130", "840", "702", 1900, 9999, null, Integer.MAX_VALUE);
+        store.find("847130", "840", "702", 1900, 9999, null, Integer.MAX_VALUE);
+
+        // The first read is dropped, the second is cached and serves the third call.
+        assertThat(routeCacheCount(registry, "miss")).isEqualTo(2);
+        assertThat(routeCacheCount(registry, "hit")).isEqualTo(1);
+    }
+
+    @Test
+    void pagesWithKeysetCursorInsteadOfCounting() {
+        for (int year = 2000; year < 2012; year++) {
+            witsTariffRepository.save(row("156", "702", "847130", year, BigDecimal.valueOf(year - 2000)));
+        }
+
+        for (String product : new String[]{"847130", null}) {
+            TariffHistoryRequest first = request(product, "156", "702");
+            first.setStartDate(LocalDate.of(2000, 1, 1));
+            first.setEndDate(LocalDate.of(2011, 12, 31));
+            first.setLimit(10);
+            TariffHistoryResponse page = tariffHistoryService.getHistory(first);
+
+            assertThat(page.getData()).hasSize(10);
+            assertThat(page.getNextCursor()).isNotNull();
+
+            first.setCursor(page.getNextCursor());
+            TariffHistoryResponse last = tariffHistoryService.getHistory(first);
+
+            assertThat(last.getData()).extracting(TariffHistoryPoint::getYear).containsExactly(2010, 2011);
+            assertThat(last.getNextCursor()).isNull();
+        }
+    }
+
+    @Test
+    void routeSeriesStepsAdminOverridesOverDatasetYears() {
+        // A route of its own, so admin tariffs left by other tests cannot interfere.
+        witsTariffRepository.saveAll(List.of(
+                row("410", "702", "847130", 2019, BigDecimal.valueOf(5)),
+                row("410", "702", "847130", 2019, BigDecimal.valueOf(7)),
+                row("410", "702", "847130", 2020, null),
+                row("410", "702", "847130", 2021, BigDecimal.valueOf(2.5)),
+                row("410", "702", "847130", 2022, BigDecimal.valueOf(3))));
+        tariffHistoryStore.onDatasetChanged(WitsDatasetChangedEvent.full(null));
+        Tariff override = tariffRepository.save(Tariff.builder()
+                .product("847130")
+                .originCountry("410")
+                .destinationCountry("702")
+                .rate(0.10)
+                .validFrom(LocalDate.of(2021, 7, 1))
+                .validTo(LocalDate.of(2023, 6, 30))
+                .label("Safeguard")
+                .build());
+        adminTariffIndex.reload();
+        try {
+            TariffHistorySeries series = tariffHistoryService.getRouteSeries("410", "702", "847130", null, null);
+
+            assertThat(series.getYears()).containsExactly(2019, 2020, 2021, 2022, 2023);
+            // 2019 keeps its first row; the override wins every year it touches.
+            assertThat(series.getDatasetRates()).usingElementComparator(Comparator.nullsFirst(BigDecimal::compareTo))
+                    .containsExactly(BigDecimal.valueOf(5), BigDecimal.valueOf(2), BigDecimal.valueOf(2.5),
+                            BigDecimal.valueOf(3), null);
+            assertThat(series.getRates()).usingElementComparator(Comparator.nullsFirst(BigDecimal::compareTo))
+                    .containsExactly(BigDecimal.valueOf(5), BigDecimal.valueOf(2), BigDecimal.TEN,
+                            BigDecimal.TEN, BigDecimal.TEN);
+            assertThat(series.getAdminSteps()).singleElement()
+                    .extracting(TariffHistorySeries.AdminStep::getLabel)
+                    .isEqualTo("Safeguard");
+
+            TariffHistorySeries window = tariffHistoryService.getRouteSeries("410", "702", "847130", 2020, 2021);
+            assertThat(window.getYears()).containsExactly(2020, 2021);
+            assertThat(window).isEqualTo(tariffHistoryService.getRouteSeries("410", "702", "847130", 2020, 2021));
+        } finally {
+            tariffRepository.delete(override);
+            adminTariffIndex.reload();
+        }
+    }
+
+    @Test
+    void routeSeriesVersionFollowsStoredAdminTariffs() {
+        String before = tariffHistoryService.routeSeriesVersion("410", "702", "847130", null, null);
+        assertThat(tariffHistoryService.routeSeriesVersion("410", "702", "847130", null, null)).isEqualTo(before);
+
+        Tariff override = tariffRepository.save(Tariff.builder()
+                .product("847130")
+                .originCountry("410")
+                .destinationCountry("702")
+                .rate(0.10)
+                .validFrom(LocalDate.of(2021, 1, 1))
+                .validTo(LocalDate.of(2021, 12, 31))
+                .label("Safeguard")
+                .build());
+        try {
+            // No index reload: the version reads the table, as another instance would see it.
+            String added = tariffHistoryService.routeSeriesVersion("410", "702", "847130", null, null);
+            assertThat(added).isNotEqualTo(before);
+
+            override.setRate(0.12);
+            override = tariffRepository.save(override);
+            assertThat(tariffHistoryService.routeSeriesVersion("410", "702", "847130", null, null))
+                    .isNotEqualTo(added)
+                    .isNotEqualTo(before);
+            assertThat(tariffHistoryService.getRouteSeries("410", "702", "847130", 2021, 2021).getRates())
+                    .usingElementComparator(BigDecimal::compareTo)
+                    .containsExactly(BigDecimal.valueOf(12));
+        } finally {
+            tariffRepository.delete(override);
+        }
+        assertThat(tariffHistoryService.routeSeriesVersion("410", "702", "847130", null, null)).isEqualTo(before);
+        assertThatThrownBy(() -> tariffHistoryService.routeSeriesVersion("410", "702", " ", null, null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void ratesBeyondIntScaleSaturateInsteadOfFailing() {
+        witsTariffRepository.save(row("410", "703", "847130", 2021, new BigDecimal("300000")));
+
+        TariffHistoryResponse response = tariffHistoryService.getHistory(request("847130", "410", "703"));
+
+        assertThat(response.getData()).singleElement()
+                .extracting(TariffHistoryPoint::getRatePercent)
+                .isEqualTo(new BigDecimal("214748.3647"));
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        TariffHistoryRequest request = request("847130", "840", "702");
+        request.setCursor("yesterday");
+
+        assertThatThrownBy(() -> tariffHistoryService.getHistory(request))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static double routeCacheCount(MeterRegistry registry, String result) {
+        return registry.get("tariffkey.history.route.cache").tag("result", result).counter().count();
+    }
+
+    private TariffHistoryRequest request(String product, String origin, String dest) {
+        TariffHistoryRequest request = new TariffHistoryRequest();
+        request.setProductCode(product);
+        request.setOriginCountry(origin);
+        request.setDestCountry(dest);
+        request.setStartDate(LocalDate.of(2020, 1, 1));
+        request.setEndDate(LocalDate.of(2022, 12, 31));
+        return request;
+    }
+
+    private WitsTariff row(String reporter, String partner, String product, int year, BigDecimal simpleAverage) {
+        return WitsTariff.builder()
+                .nomenCode("H5")
+                .reporterIso(reporter)
+                .partnerCode(partner)
+                .productCode(product)
+                .year(year)
+                .simpleAverage(simpleAverage)
+                .sumOfRates(BigDecimal.valueOf(4))
+                .totalNoOfLines(2)
+                .sourceFile(reporter + "_" + year + ".zip")
+                .build();
+    }
+}
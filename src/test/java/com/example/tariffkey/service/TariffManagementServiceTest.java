@@ -8,8 +8,14 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -24,9 +30,16 @@ class TariffManagementServiceTest {
     @Autowired
     private TariffRepository tariffRepository;
 
+    @Autowired
+    private AdminTariffIndex adminTariffIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @BeforeEach
     void clean() {
         tariffRepository.deleteAll();
+        adminTariffIndex.reload();
     }
 
     @Test
@@ -40,6 +53,7 @@ class TariffManagementServiceTest {
                 .validTo(LocalDate.of(2023, 12, 31))
                 .label("Existing")
                 .build());
+        adminTariffIndex.reload();
 
         AdminTariffRequest request = new AdminTariffRequest();
         request.setProduct("847130");
@@ -56,6 +70,34 @@ class TariffManagementServiceTest {
                 .hasMessageContaining("Overlapping");
     }
 
+    @Test
+    void overlapCheckReadsTheTableNotTheIndex() {
+        // Written behind the index's back, as another replica would.
+        tariffRepository.save(Tariff.builder()
+                .product("847130")
+                .originCountry("840")
+                .destinationCountry("702")
+                .rate(0.05)
+                .validFrom(LocalDate.of(2023, 1, 1))
+                .validTo(LocalDate.of(2023, 12, 31))
+                .label("Elsewhere")
+                .build());
+
+        AdminTariffRequest request = new AdminTariffRequest();
+        request.setProduct("847130");
+        request.setOriginCountry("840");
+        request.setDestinationCountry("702");
+        request.setRate(0.06);
+        request.setValidFrom(LocalDate.of(2023, 6, 1));
+        request.setValidTo(LocalDate.of(2023, 12, 31));
+        request.setLabel("Overlap");
+
+        assertThatThrownBy(() -> tariffManagementService.addTariff(request, "admin"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Overlapping");
+        assertThat(adminTariffIndex.findLatest("840", "702", "847130")).isEmpty();
+    }
+
     @Test
     void addTariffClosesExistingRangeWhenOverrideEnabled() {
         tariffRepository.save(Tariff.builder()
@@ -67,6 +109,7 @@ class TariffManagementServiceTest {
                 .validTo(LocalDate.of(2023, 12, 31))
                 .label("Existing")
                 .build());
+        adminTariffIndex.reload();
 
         AdminTariffRequest request = new AdminTariffRequest();
         request.setProduct("847130");
@@ -89,4 +132,76 @@ class TariffManagementServiceTest {
         assertThat(saved.getValidFrom()).isEqualTo(LocalDate.of(2023, 6, 1));
         assertThat(saved.getCreatedBy()).isEqualTo("admin");
     }
+
+    @Test
+    void indexTracksAddAndDeleteWithoutReload() {
+        AdminTariffRequest request = new AdminTariffRequest();
+        request.setProduct("847130");
+        request.setOriginCountry("840");
+        request.setDestinationCountry("702");
+        request.setRate(0.07);
+        request.setValidFrom(LocalDate.of(2024, 1, 1));
+        request.setValidTo(LocalDate.of(2024, 12, 31));
+        request.setLabel("2024");
+
+        Tariff saved = tariffManagementService.addTariff(request, "admin");
+
+        assertThat(adminTariffIndex.findActive("840", "702", "847130",
+                LocalDate.of(2024, 6, 1), LocalDate.of(2024, 6, 30)))
+                .get()
+                .extracting(Tariff::getId)
+                .isEqualTo(saved.getId());
+        assertThat(adminTariffIndex.findActive("840", "702", "847130",
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31))).isEmpty();
+
+        tariffManagementService.deleteTariff(saved.getId());
+
+        assertThat(adminTariffIndex.findLatest("840", "702", "847130")).isEmpty();
+    }
+
+    @Test
+    void concurrentFirstRangesOfARouteAreSerialized() throws Exception {
+        // The route has no rows, so there is nothing for the overlap query to row-lock.
+        AdminTariffRequest first = routeRequest(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31));
+        AdminTariffRequest second = routeRequest(LocalDate.of(2023, 6, 1), LocalDate.of(2023, 12, 31));
+        CountDownLatch firstWritten = new CountDownLatch(1);
+
+        ExecutorService writer = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> firstCommit = writer.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                tariffManagementService.addTariff(first, "admin");
+                firstWritten.countDown();
+                sleepQuietly(300);
+            }));
+            assertThat(firstWritten.await(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThatThrownBy(() -> tariffManagementService.addTariff(second, "admin"))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("Overlapping");
+            firstCommit.get(10, TimeUnit.SECONDS);
+        } finally {
+            writer.shutdownNow();
+        }
+        assertThat(tariffRepository.findAll()).hasSize(1);
+    }
+
+    private static AdminTariffRequest routeRequest(LocalDate validFrom, LocalDate validTo) {
+        AdminTariffRequest request = new AdminTariffRequest();
+        request.setProduct("847130");
+        request.setOriginCountry("840");
+        request.setDestinationCountry("702");
+        request.setRate(0.06);
+        request.setValidFrom(validFrom);
+        request.setValidTo(validTo);
+        request.setLabel("Concurrent");
+        return request;
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,57 @@
+package com.example.tariffkey.service;
+
+import io.jsonwebtoken.JwtException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VerifiedTokenCacheTest {
+
+    private final JwtService jwtService = new JwtService("TEST_SECRET_KEY_123456789012345678901234567890", 60_000);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void repeatedTokenIsServedFromCache() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(jwtService, registry, 100);
+        String token = tokenFor("alice", "USER");
+
+        JwtService.VerifiedToken first = cache.verify(token);
+        JwtService.VerifiedToken second = cache.verify(token);
+
+        assertThat(second).isSameAs(first);
+        assertThat(second.subject()).isEqualTo("alice");
+        assertThat(second.role()).isEqualTo("USER");
+        assertThat(registry.get("tariffkey.auth.token.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(registry.get("tariffkey.auth.token.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void revocationDropsOnlyThatUsersTokens() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(jwtService, registry, 100);
+        cache.verify(tokenFor("alice", "USER"));
+        cache.verify(tokenFor("bob", "ADMIN"));
+
+        cache.onUserAccessRevoked(new UserAccessRevokedEvent("alice"));
+
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidTokensAreNotCachedAndSizeStaysBounded() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(jwtService, registry, 32);
+
+        assertThatThrownBy(() -> cache.verify("not-a-token")).isInstanceOf(JwtException.class);
+        for (int i = 0; i < 200; i++) {
+            cache.verify(tokenFor("user" + i, "USER"));
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(32);
+    }
+
+    private String tokenFor(String username, String role) {
+        return jwtService.generateToken(User.withUsername(username).password("n/a").authorities(role).build());
+    }
+}
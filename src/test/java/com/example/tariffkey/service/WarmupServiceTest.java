@@ -0,0 +1,74 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.WitsRateSummary;
+import com.example.tariffkey.model.WitsRateSummaryId;
+import com.example.tariffkey.repository.WitsRateSummaryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class WarmupServiceTest {
+
+    @Autowired
+    private WarmupService warmupService;
+
+    @Autowired
+    private LookupService lookupService;
+
+    @Autowired
+    private WitsRateSummaryRepository witsRateSummaryRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void seedRoutes() {
+        witsRateSummaryRepository.deleteAll();
+        witsRateSummaryRepository.saveAll(List.of(
+                row("840", "702", "847130"),
+                row("840", "156", "950300"),
+                row("702", "840", "847130")));
+        lookupService.rebuild();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        witsRateSummaryRepository.deleteAll();
+        lookupService.rebuild();
+    }
+
+    @Test
+    void quotesSampledRoutesForEveryRound() {
+        long timedBefore = meterRegistry.timer("tariffkey.warmup").count();
+
+        WarmupService.Result result = warmupService.warmUp();
+
+        // One route per reporter per partner position, 20 rounds by default, no HTTP server in a mock context.
+        assertThat(result.routes()).isEqualTo(3);
+        assertThat(result.quotes()).isEqualTo(60);
+        assertThat(result.lookupRequests()).isZero();
+        assertThat(meterRegistry.timer("tariffkey.warmup").count()).isEqualTo(timedBefore + 1);
+        assertThat(meterRegistry.get("tariffkey.startup.steady_state").timeGauge().value()).isPositive();
+    }
+
+    private WitsRateSummary row(String reporter, String partner, String product) {
+        return WitsRateSummary.builder()
+                .id(new WitsRateSummaryId(reporter, partner, product, 2022))
+                .nomenCode("H5")
+                .simpleAverage(BigDecimal.ONE)
+                .sourceFile("AVEPref_H5_" + reporter + "_2022_U2.zip")
+                .latest(true)
+                .build();
+    }
+}
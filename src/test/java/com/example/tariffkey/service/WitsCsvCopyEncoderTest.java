@@ -0,0 +1,44 @@
+package com.example.tariffkey.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WitsCsvCopyEncoderTest {
+
+    private static final String HEADER = "NomenCode,Reporter_ISO_N,Year,ProductCode,Partner,ExcludedFrom,"
+            + "Sum_Of_Rates,Min_Rate,Max_Rate,SimpleAverage,TotalNoOfLines,Nbr_Pref_Lines,"
+            + "Nbr_MFN_Lines,Nbr_NA_Lines,EstCode\r\n";
+
+    @Test
+    void reordersTrimsAndNullsFieldsForCopy() throws IOException {
+        String csv = "﻿" + HEADER
+                + "H0,036,1991,040610,N86,   ,      0.00,      0.00,      1.50,      0.75,1,1,0,0,U2\r\n"
+                + "H0,036,1991,\"0406\"\"10\",554,,,,,,2,0,2,0,\r\n";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = new WitsCsvCopyEncoder("AVEPref_H0_AUS_1991_U2.zip", out::write)
+                .encode(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(out.toString(StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "H0\t036\tN86\t040610\t1991\t0.00\t0.00\t1.50\t0.75\t1\t1\t0\t0\tU2\tAVEPref_H0_AUS_1991_U2.zip",
+                "H0\t036\t554\t0406\"10\t1991\t\\N\t\\N\t\\N\t\\N\t2\t0\t2\t0\t\\N\tAVEPref_H0_AUS_1991_U2.zip");
+    }
+
+    @Test
+    void rejectsCsvWithoutExpectedColumns() {
+        byte[] csv = "NomenCode,Year\nH0,1991\n".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> new WitsCsvCopyEncoder("x.zip", (b, o, l) -> { })
+                .encode(new ByteArrayInputStream(csv)))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("Reporter_ISO_N");
+    }
+}
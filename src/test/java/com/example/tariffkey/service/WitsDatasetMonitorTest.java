@@ -0,0 +1,74 @@
+package com.example.tariffkey.service;
+
+import com.example.tariffkey.model.WitsImportAudit;
+import com.example.tariffkey.repository.WitsImportAuditRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class WitsDatasetMonitorTest {
+
+    @Autowired
+    private WitsImportAuditRepository importAuditRepository;
+
+    private final List<WitsDatasetChangedEvent> events = new ArrayList<>();
+    private WitsDatasetMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        importAuditRepository.deleteAll();
+        // A private instance, so the scheduled poll of the shared bean cannot race the test.
+        monitor = new WitsDatasetMonitor(importAuditRepository, event -> events.add((WitsDatasetChangedEvent) event));
+    }
+
+    @AfterEach
+    void cleanUp() {
+        importAuditRepository.deleteAll();
+    }
+
+    @Test
+    void publishesArchivesByChangeSequenceNotFinishTime() {
+        OffsetDateTime started = OffsetDateTime.now();
+        importAuditRepository.save(audit("840_2021.zip", 5L, started, "840"));
+        monitor.poll();
+        assertThat(events).isEmpty();
+
+        // Began before the first archive but only committed afterwards, so its
+        // finished_at is older than the version already seen.
+        importAuditRepository.save(audit("702_2021.zip", 6L, started.minusMinutes(5), "702"));
+        monitor.poll();
+
+        assertThat(events).singleElement().satisfies(event -> {
+            assertThat(event.version()).isEqualTo(6L);
+            assertThat(event.changedReporters()).isEqualTo(Set.of("702"));
+        });
+        assertThat(monitor.currentVersion()).isEqualTo(6L);
+
+        monitor.poll();
+        assertThat(events).hasSize(1);
+    }
+
+    private static WitsImportAudit audit(String sourceFile, long changeSeq, OffsetDateTime finishedAt,
+                                         String reporters) {
+        return WitsImportAudit.builder()
+                .sourceFile(sourceFile)
+                .finishedAt(finishedAt)
+                .changeSeq(changeSeq)
+                .changedRows(10L)
+                .rowCount(10L)
+                .reporters(reporters)
+                .build();
+    }
+}
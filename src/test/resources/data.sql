@@ -19,3 +19,9 @@ INSERT INTO fee_schedule (code, amount) VALUES
   ('inspection', 80.00),
   ('processing', 65.00),
   ('others', 40.00);
+
+-- PostgreSQL functions used by native queries; see H2PostgresFunctions.
+CREATE TABLE IF NOT EXISTS advisory_locks (id INT PRIMARY KEY);
+MERGE INTO advisory_locks KEY (id) VALUES (1);
+CREATE ALIAS IF NOT EXISTS hashtext FOR 'com.example.tariffkey.H2PostgresFunctions.hashtext';
+CREATE ALIAS IF NOT EXISTS pg_advisory_xact_lock FOR 'com.example.tariffkey.H2PostgresFunctions.advisoryXactLock';